@@ -1,10 +1,21 @@
 # 🗑️ Drop Existing Objects (Safe Reset)
 
 DROP TABLE transactions_KNBtbl CASCADE CONSTRAINTS;
+DROP TABLE transactions_archive_KNBtbl CASCADE CONSTRAINTS;
+DROP TABLE ledger_archive_log_KNBtbl CASCADE CONSTRAINTS;
+DROP TABLE balance_snapshots_KNBtbl CASCADE CONSTRAINTS;
+DROP TABLE standing_instructions_KNBtbl CASCADE CONSTRAINTS;
+DROP TABLE interest_runs_KNBtbl CASCADE CONSTRAINTS;
+DROP TABLE recon_mismatches_KNBtbl CASCADE CONSTRAINTS;
 DROP TABLE accounts_KNBtbl CASCADE CONSTRAINTS;
 DROP TABLE users_KNBtbl CASCADE CONSTRAINTS;
 DROP TABLE audit_log_KNBtbl CASCADE CONSTRAINTS;
+DROP TABLE config_KNBtbl CASCADE CONSTRAINTS;
+DROP TABLE stats_counters_KNBtbl CASCADE CONSTRAINTS;
+DROP TABLE idempotency_KNBtbl CASCADE CONSTRAINTS;
+DROP TABLE ledger_watermark_KNBtbl CASCADE CONSTRAINTS;
 DROP SEQUENCE acno_seq_KNBtbl;
+DROP SEQUENCE config_version_seq_KNBtbl;
 
 # ⚙️ Recreate Schema
 
@@ -23,7 +34,7 @@ CREATE TABLE users_KNBtbl (
 -- ACCOUNTS TABLE
 CREATE TABLE accounts_KNBtbl (
     acno NUMBER(12) PRIMARY KEY,
-    user_id NUMBER UNIQUE,
+    user_id NUMBER CONSTRAINT uq_accounts_user_KNBtbl UNIQUE,
     name VARCHAR2(100) NOT NULL,
     balance NUMBER(15,2) NOT NULL,
     mobile_number VARCHAR2(20),
@@ -32,7 +43,7 @@ CREATE TABLE accounts_KNBtbl (
     FOREIGN KEY (user_id) REFERENCES users_KNBtbl(user_id)
 );
 
--- TRANSACTIONS TABLE
+-- TRANSACTIONS TABLE: one partition per month, created automatically as rows arrive
 CREATE TABLE transactions_KNBtbl (
     tx_id NUMBER GENERATED BY DEFAULT ON NULL AS IDENTITY PRIMARY KEY,
     acno NUMBER(12),
@@ -40,12 +51,52 @@ CREATE TABLE transactions_KNBtbl (
     amount NUMBER(15,2) NOT NULL,
     from_acno NUMBER(12),
     to_acno NUMBER(12),
-    date_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    date_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
     status VARCHAR2(20) DEFAULT 'SUCCESS',
     remarks VARCHAR2(255),
+    balance_after NUMBER(15,2),  -- account balance once this row applied
     FOREIGN KEY (acno) REFERENCES accounts_KNBtbl(acno)
+)
+PARTITION BY RANGE (date_time) INTERVAL (NUMTOYMINTERVAL(1, 'MONTH'))
+(PARTITION p_ledger_initial VALUES LESS THAN (TIMESTAMP '2024-01-01 00:00:00'));
+
+-- Statement pages seek on (acno, date_time, tx_id); newest-first reads scan it backwards.
+-- LOCAL so date-bounded statements only probe the hot partitions.
+CREATE INDEX idx_tx_acno_time_KNBtbl ON transactions_KNBtbl (acno, date_time, tx_id) LOCAL;
+
+-- ARCHIVED LEDGER: closed partitions moved here by LedgerArchiver (direct-path, compressed)
+CREATE TABLE transactions_archive_KNBtbl (
+    tx_id NUMBER PRIMARY KEY,
+    acno NUMBER(12),
+    type VARCHAR2(20) NOT NULL,
+    amount NUMBER(15,2) NOT NULL,
+    from_acno NUMBER(12),
+    to_acno NUMBER(12),
+    date_time TIMESTAMP NOT NULL,
+    status VARCHAR2(20),
+    remarks VARCHAR2(255),
+    balance_after NUMBER(15,2)
+) COMPRESS;
+
+CREATE INDEX idx_tx_archive_acno_KNBtbl ON transactions_archive_KNBtbl (acno, date_time);
+
+CREATE TABLE ledger_archive_log_KNBtbl (
+    partition_high TIMESTAMP PRIMARY KEY,
+    rows_archived NUMBER NOT NULL,
+    archived_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
+-- BALANCE SNAPSHOTS: per-account balance at each nightly cutoff, written by BalanceSnapshotter
+CREATE TABLE balance_snapshots_KNBtbl (
+    acno NUMBER(12),
+    snapshot_at TIMESTAMP,
+    balance NUMBER(15,2) NOT NULL,
+    PRIMARY KEY (acno, snapshot_at)
+) ORGANIZATION INDEX;
+
+-- Role listings (role + ACTIVE) and pending approvals (status only)
+CREATE INDEX idx_users_status_role_KNBtbl ON users_KNBtbl (status, role);
+
 -- AUDIT LOG FOR ADMIN ACTIONS
 CREATE TABLE audit_log_KNBtbl (
     audit_id NUMBER GENERATED BY DEFAULT ON NULL AS IDENTITY PRIMARY KEY,
@@ -55,8 +106,159 @@ CREATE TABLE audit_log_KNBtbl (
     details VARCHAR2(500)
 );
 
+-- SYSTEM CONFIGURATION (key/value, version-stamped for cache refresh)
+CREATE TABLE config_KNBtbl (
+    key VARCHAR2(100) PRIMARY KEY,
+    value VARCHAR2(500),
+    version NUMBER NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE SEQUENCE config_version_seq_KNBtbl START WITH 1 INCREMENT BY 1;
+
+-- Recent audit log, newest first
+CREATE INDEX idx_audit_time_KNBtbl ON audit_log_KNBtbl (action_time);
+
+-- IDEMPOTENCY KEYS: the primary key makes a retried request with the same key a no-op
+CREATE TABLE idempotency_KNBtbl (
+    idem_key VARCHAR2(64) PRIMARY KEY,
+    operation VARCHAR2(40) NOT NULL,
+    acno NUMBER(12) NOT NULL,
+    amount NUMBER(15,2) NOT NULL,
+    status VARCHAR2(10) DEFAULT 'PENDING' NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_idempotency_created_KNBtbl ON idempotency_KNBtbl (created_at);
+
+-- LEDGER WATERMARK: last ledger engine journal sequence applied to the tables
+CREATE TABLE ledger_watermark_KNBtbl (
+    journal_id VARCHAR2(40) PRIMARY KEY,
+    last_seq NUMBER NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- STANDING INSTRUCTIONS: recurring utility payments, paid by StandingInstructionScheduler
+CREATE TABLE standing_instructions_KNBtbl (
+    si_id NUMBER GENERATED BY DEFAULT ON NULL AS IDENTITY PRIMARY KEY,
+    acno NUMBER(12) NOT NULL,
+    utility_name VARCHAR2(100) NOT NULL,
+    amount NUMBER(15,2) NOT NULL,
+    frequency VARCHAR2(10) NOT NULL,
+    next_run TIMESTAMP NOT NULL,
+    status VARCHAR2(10) DEFAULT 'ACTIVE' NOT NULL,
+    last_result VARCHAR2(20),
+    last_run TIMESTAMP,
+    FOREIGN KEY (acno) REFERENCES accounts_KNBtbl(acno)
+);
+
+-- Scheduler loads: active instructions by due time
+CREATE INDEX idx_si_due_KNBtbl ON standing_instructions_KNBtbl (status, next_run);
+
+-- INTEREST RUNS: one checkpoint row per posted chunk of a month's interest, written by InterestPoster
+CREATE TABLE interest_runs_KNBtbl (
+    run_id VARCHAR2(7),
+    from_acno NUMBER(12),
+    to_acno NUMBER(12) NOT NULL,
+    accounts NUMBER DEFAULT 0 NOT NULL,
+    interest NUMBER(15,2) DEFAULT 0 NOT NULL,
+    posted_at TIMESTAMP,
+    PRIMARY KEY (run_id, from_acno)
+) ORGANIZATION INDEX;
+
+-- RECONCILIATION MISMATCHES: accounts whose balance disagrees with the ledger, written by Reconciler
+CREATE TABLE recon_mismatches_KNBtbl (
+    run_id VARCHAR2(20),
+    acno NUMBER(12),
+    stored_balance NUMBER(15,2) NOT NULL,
+    ledger_balance NUMBER(15,2) NOT NULL,
+    difference NUMBER(15,2) NOT NULL,  -- stored less ledger
+    ledger_rows NUMBER NOT NULL,
+    found_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (run_id, acno)
+);
+
 -- ACCOUNT NUMBER SEQUENCE
-CREATE SEQUENCE acno_seq_KNBtbl START WITH 10000 INCREMENT BY 1;
+-- Steps by AccountNumberAllocator.BLOCK_SIZE: each NEXTVAL reserves a block of 50 numbers
+CREATE SEQUENCE acno_seq_KNBtbl START WITH 10000 INCREMENT BY 50;
+
+-- DASHBOARD COUNTERS: maintained by the triggers below so counts never scan the base tables.
+-- Each counter is split over 16 slots (chosen by primary key) so concurrent inserts
+-- update different rows; readers SUM the slots.
+CREATE TABLE stats_counters_KNBtbl (
+    counter_name VARCHAR2(30) NOT NULL,
+    slot NUMBER(2) NOT NULL,
+    value NUMBER DEFAULT 0 NOT NULL,
+    PRIMARY KEY (counter_name, slot)
+);
+
+INSERT INTO stats_counters_KNBtbl (counter_name, slot, value)
+SELECT c.name, s.slot, 0
+FROM (SELECT 'USERS' name FROM dual UNION ALL SELECT 'ACCOUNTS' FROM dual
+      UNION ALL SELECT 'TRANSACTIONS' FROM dual UNION ALL SELECT 'PENDING_USERS' FROM dual) c,
+     (SELECT LEVEL - 1 slot FROM dual CONNECT BY LEVEL <= 16) s;
+
+CREATE OR REPLACE TRIGGER trg_users_stats_KNBtbl
+AFTER INSERT OR DELETE OR UPDATE OF status ON users_KNBtbl
+FOR EACH ROW
+DECLARE
+    v_slot NUMBER := MOD(NVL(:NEW.user_id, :OLD.user_id), 16);
+    v_pending NUMBER := 0;
+BEGIN
+    IF INSERTING THEN
+        UPDATE stats_counters_KNBtbl SET value = value + 1 WHERE counter_name = 'USERS' AND slot = v_slot;
+    ELSIF DELETING THEN
+        UPDATE stats_counters_KNBtbl SET value = value - 1 WHERE counter_name = 'USERS' AND slot = v_slot;
+    END IF;
+    IF :NEW.status = 'PENDING' THEN v_pending := v_pending + 1; END IF;
+    IF :OLD.status = 'PENDING' THEN v_pending := v_pending - 1; END IF;
+    IF v_pending <> 0 THEN
+        UPDATE stats_counters_KNBtbl SET value = value + v_pending WHERE counter_name = 'PENDING_USERS' AND slot = v_slot;
+    END IF;
+END;
+/
+
+CREATE OR REPLACE TRIGGER trg_accounts_stats_KNBtbl
+FOR INSERT OR DELETE ON accounts_KNBtbl
+COMPOUND TRIGGER
+    v_delta NUMBER := 0;
+
+    AFTER EACH ROW IS
+    BEGIN
+        v_delta := v_delta + CASE WHEN INSERTING THEN 1 ELSE -1 END;
+    END AFTER EACH ROW;
+
+    -- One update per statement, on this session's slot
+    AFTER STATEMENT IS
+    BEGIN
+        IF v_delta <> 0 THEN
+            UPDATE stats_counters_KNBtbl SET value = value + v_delta
+            WHERE counter_name = 'ACCOUNTS' AND slot = MOD(TO_NUMBER(SYS_CONTEXT('USERENV', 'SID')), 16);
+        END IF;
+    END AFTER STATEMENT;
+END trg_accounts_stats_KNBtbl;
+/
+
+CREATE OR REPLACE TRIGGER trg_transactions_stats_KNBtbl
+FOR INSERT OR DELETE ON transactions_KNBtbl
+COMPOUND TRIGGER
+    v_delta NUMBER := 0;
+
+    AFTER EACH ROW IS
+    BEGIN
+        v_delta := v_delta + CASE WHEN INSERTING THEN 1 ELSE -1 END;
+    END AFTER EACH ROW;
+
+    -- One update per statement, on this session's slot
+    AFTER STATEMENT IS
+    BEGIN
+        IF v_delta <> 0 THEN
+            UPDATE stats_counters_KNBtbl SET value = value + v_delta
+            WHERE counter_name = 'TRANSACTIONS' AND slot = MOD(TO_NUMBER(SYS_CONTEXT('USERENV', 'SID')), 16);
+        END IF;
+    END AFTER STATEMENT;
+END trg_transactions_stats_KNBtbl;
+/
 
 # 👤 Insert Default Users
 
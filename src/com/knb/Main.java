@@ -1,7 +1,10 @@
 package com.knb;
 
+import com.knb.repository.BankStorage;
+import com.knb.repository.InMemoryStorage;
 import com.knb.service.AuthenticationService;
 import com.knb.service.DatabaseManager;
+import com.knb.service.MigrationRunner;
 import com.knb.view.WelcomeUI;
 
 import javax.swing.SwingUtilities;
@@ -13,7 +16,18 @@ import javax.swing.UIManager;
  */
 public class Main {
 
+    /**
+     * Launch the application
+     * @param args Pass --demo to run against seeded in-memory storage instead of Oracle
+     */
     public static void main(String[] args) {
+        boolean demoMode = args.length > 0 && "--demo".equals(args[0]);
+
+        // Bring the database schema up to date before any screen queries it
+        if (!demoMode) {
+            new MigrationRunner(new DatabaseManager()).runAtStartup();
+        }
+
         // Set the system look and feel for a native appearance
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -26,8 +40,8 @@ public class Main {
         SwingUtilities.invokeLater(() -> {
             try {
                 // Initialize core services
-                DatabaseManager dbManager = new DatabaseManager();
-                AuthenticationService authService = new AuthenticationService(dbManager);
+                BankStorage storage = demoMode ? InMemoryStorage.withDemoData() : new DatabaseManager();
+                AuthenticationService authService = new AuthenticationService(storage);
                 
                 // Create and display the main welcome window
                 new WelcomeUI(authService).setVisible(true);
@@ -7,9 +7,9 @@ package com.knb.model;
 public class Account {
     private int acno, userId;
     private String name, mobileNumber, accountType, accountStatus;
-    private double balance;
+    private long balance;  // paise
 
-    public Account(int acno, int userId, String name, double balance, String mobileNumber, String accountType, String accountStatus) {
+    public Account(int acno, int userId, String name, long balance, String mobileNumber, String accountType, String accountStatus) {
         this.acno = acno;
         this.userId = userId;
         this.name = name;
@@ -23,18 +23,18 @@ public class Account {
     public int getAcno() { return acno; }
     public int getUserId() { return userId; }
     public String getName() { return name; }
-    public double getBalance() { return balance; }
+    public long getBalance() { return balance; }
     public String getMobileNumber() { return mobileNumber; }
     public String getAccountType() { return accountType; }
     public String getAccountStatus() { return accountStatus; }
     
     // Setters for mutable fields
-    public void setBalance(double balance) { this.balance = balance; }
+    public void setBalance(long balance) { this.balance = balance; }
     public void setMobileNumber(String mobileNumber) { this.mobileNumber = mobileNumber; }
     public void setAccountStatus(String accountStatus) { this.accountStatus = accountStatus; }
     
     @Override
     public String toString() {
-        return String.format("Account[%d] - %s (₹%,.2f)", acno, name, balance);
+        return String.format("Account[%d] - %s (₹%s)", acno, name, Money.format(balance));
     }
 }
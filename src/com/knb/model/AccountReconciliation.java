@@ -0,0 +1,45 @@
+package com.knb.model;
+
+/**
+ * AccountReconciliation model for one account's stored balance against its ledger
+ * The ledger balance is the last snapshot plus every successful row since, or with
+ * no snapshot, the opening balance implied by the first recorded row plus every row.
+ * It is null when neither anchor exists, so the account cannot be checked.
+ */
+public class AccountReconciliation {
+    private final int acno;
+    private final long storedBalance;   // paise
+    private final Long ledgerBalance;   // paise
+    private final long ledgerRows;
+
+    public AccountReconciliation(int acno, long storedBalance, Long ledgerBalance, long ledgerRows) {
+        this.acno = acno;
+        this.storedBalance = storedBalance;
+        this.ledgerBalance = ledgerBalance;
+        this.ledgerRows = ledgerRows;
+    }
+
+    // Getters
+    public int getAcno() { return acno; }
+    public long getStoredBalance() { return storedBalance; }
+    public Long getLedgerBalance() { return ledgerBalance; }
+    public long getLedgerRows() { return ledgerRows; }
+    public boolean isAnchored() { return ledgerBalance != null; }
+
+    public boolean isBalanced() {
+        return ledgerBalance == null || ledgerBalance == storedBalance;
+    }
+
+    /**
+     * Stored balance less ledger balance; positive means the account holds more than its ledger explains
+     */
+    public long getDifference() {
+        return ledgerBalance == null ? 0 : Money.subtract(storedBalance, ledgerBalance);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Reconciliation[%d] stored ₹%s ledger %s (%d rows)", acno, Money.format(storedBalance),
+                ledgerBalance == null ? "unknown" : "₹" + Money.format(ledgerBalance), ledgerRows);
+    }
+}
@@ -0,0 +1,63 @@
+package com.knb.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * BatchResult model summarising a bulk write
+ * Records which input rows failed and the throughput achieved
+ */
+public class BatchResult {
+    private final int totalRows;
+    private int succeededRows;
+    private final List<RowFailure> failures = new ArrayList<>();
+    private long elapsedNanos;
+
+    public BatchResult(int totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    /**
+     * A single input row that could not be written
+     */
+    public static class RowFailure {
+        public final int index;
+        public final String message;
+
+        public RowFailure(int index, String message) {
+            this.index = index;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return "Row " + index + ": " + message;
+        }
+    }
+
+    public void addSucceeded(int rows) { succeededRows += rows; }
+    public void addFailure(int index, String message) { failures.add(new RowFailure(index, message)); }
+    public void setElapsedNanos(long elapsedNanos) { this.elapsedNanos = elapsedNanos; }
+
+    // Getters
+    public int getTotalRows() { return totalRows; }
+    public int getSucceededRows() { return succeededRows; }
+    public int getFailedRows() { return failures.size(); }
+    public List<RowFailure> getFailures() { return Collections.unmodifiableList(failures); }
+    public long getElapsedMillis() { return elapsedNanos / 1_000_000; }
+    public boolean isFullySuccessful() { return failures.isEmpty() && succeededRows == totalRows; }
+
+    /**
+     * Rows written per second over the whole batch
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : succeededRows * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Batch[%d/%d rows, %d failed, %d ms, %.0f rows/s]",
+                succeededRows, totalRows, getFailedRows(), getElapsedMillis(), getRowsPerSecond());
+    }
+}
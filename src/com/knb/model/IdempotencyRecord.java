@@ -0,0 +1,46 @@
+package com.knb.model;
+
+/**
+ * IdempotencyRecord model for a client-supplied request key
+ * Remembers which request the key was first used for and how it ended
+ */
+public class IdempotencyRecord {
+    // UNKNOWN: the request failed part way and may still have moved money
+    public enum Status { PENDING, SUCCEEDED, FAILED, UNKNOWN }
+
+    private final String key;
+    private final String operation;
+    private final int acno;
+    private final long amount;  // paise
+    private Status status;
+
+    public IdempotencyRecord(String key, String operation, int acno, long amount, Status status) {
+        this.key = key;
+        this.operation = operation;
+        this.acno = acno;
+        this.amount = amount;
+        this.status = status;
+    }
+
+    /**
+     * Whether a retry carries the same request as the one first recorded under this key
+     */
+    public boolean matches(String operation, int acno, long amount) {
+        return this.operation.equals(operation) && this.acno == acno && this.amount == amount;
+    }
+
+    // Getters
+    public String getKey() { return key; }
+    public String getOperation() { return operation; }
+    public int getAcno() { return acno; }
+    public long getAmount() { return amount; }
+    public Status getStatus() { return status; }
+
+    // Setters
+    public void setStatus(Status status) { this.status = status; }
+
+    @Override
+    public String toString() {
+        return String.format("Idempotency[%s] - %s %d ₹%s (%s)", key, operation, acno, Money.format(amount), status);
+    }
+}
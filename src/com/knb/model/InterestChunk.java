@@ -0,0 +1,45 @@
+package com.knb.model;
+
+/**
+ * InterestChunk model for one posted slice of an interest run
+ * Covers the account numbers in [fromAcno, toAcno); its row is the run's checkpoint
+ */
+public class InterestChunk {
+    private final String runId;
+    private final int fromAcno;
+    private final int toAcno;
+    private final int accounts;
+    private final long interest;  // paise
+
+    public InterestChunk(String runId, int fromAcno, int toAcno, int accounts, long interest) {
+        this.runId = runId;
+        this.fromAcno = fromAcno;
+        this.toAcno = toAcno;
+        this.accounts = accounts;
+        this.interest = interest;
+    }
+
+    /**
+     * Interest for one month on a balance at an annual rate, rounded half up to the paisa
+     * @param rateBps Annual rate in basis points (350 = 3.5%)
+     */
+    public static long monthlyInterest(long balance, int rateBps) {
+        if (balance <= 0 || rateBps <= 0) {
+            return 0;
+        }
+        return (Math.multiplyExact(balance, (long) rateBps) + 60_000) / 120_000;
+    }
+
+    // Getters
+    public String getRunId() { return runId; }
+    public int getFromAcno() { return fromAcno; }
+    public int getToAcno() { return toAcno; }
+    public int getAccounts() { return accounts; }
+    public long getInterest() { return interest; }
+
+    @Override
+    public String toString() {
+        return String.format("InterestChunk[%s] %d-%d: %d accounts ₹%s", runId, fromAcno, toAcno, accounts,
+                Money.format(interest));
+    }
+}
@@ -0,0 +1,47 @@
+package com.knb.model;
+
+/**
+ * LedgerOp model for one queued money movement
+ * An account number of 0 stands for cash, so a deposit has no source and a
+ * withdrawal no destination; a transfer has both.
+ */
+public class LedgerOp {
+    private final String type;
+    private final int fromAcno;
+    private final int toAcno;
+    private final long amount;  // paise
+    private final String remarks;
+
+    public LedgerOp(String type, int fromAcno, int toAcno, long amount, String remarks) {
+        this.type = type;
+        this.fromAcno = fromAcno;
+        this.toAcno = toAcno;
+        this.amount = amount;
+        this.remarks = remarks;
+    }
+
+    public static LedgerOp deposit(int acno, long amount, String remarks) {
+        return new LedgerOp("DEPOSIT", 0, acno, amount, remarks);
+    }
+
+    public static LedgerOp debit(String type, int acno, long amount, String remarks) {
+        return new LedgerOp(type, acno, 0, amount, remarks);
+    }
+
+    public static LedgerOp transfer(int fromAcno, int toAcno, long amount) {
+        return new LedgerOp("TRANSFER", fromAcno, toAcno, amount, null);
+    }
+
+    // Getters
+    public String getType() { return type; }
+    public int getFromAcno() { return fromAcno; }
+    public int getToAcno() { return toAcno; }
+    public long getAmount() { return amount; }
+    public String getRemarks() { return remarks; }
+    public boolean isTransfer() { return fromAcno != 0 && toAcno != 0; }
+
+    @Override
+    public String toString() {
+        return String.format("LedgerOp[%s] %d -> %d ₹%s", type, fromAcno, toAcno, Money.format(amount));
+    }
+}
@@ -0,0 +1,104 @@
+package com.knb.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Money helpers for amounts held as long paise (1 rupee = 100 paise)
+ * Arithmetic is exact and works on primitives, so the transfer path allocates nothing.
+ * Values map to NUMBER(15,2) columns through BigDecimal, never through double.
+ */
+public final class Money {
+    public static final long PAISE_PER_RUPEE = 100;
+    public static final int SCALE = 2;
+
+    /** Largest amount a NUMBER(15,2) column can hold */
+    public static final long MAX_PAISE = 999_999_999_999_999L;
+
+    private Money() {
+    }
+
+    /**
+     * Whole rupees to paise
+     */
+    public static long ofRupees(long rupees) {
+        return Math.multiplyExact(rupees, PAISE_PER_RUPEE);
+    }
+
+    /**
+     * Sum of two amounts; throws ArithmeticException instead of wrapping around
+     */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * Difference of two amounts; throws ArithmeticException instead of wrapping around
+     */
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Parse a rupee amount such as "1,250.5" exactly
+     * @throws NumberFormatException if the text is not a number with at most two decimals
+     */
+    public static long parse(String text) {
+        if (text == null) {
+            throw new NumberFormatException("Amount is empty");
+        }
+        String s = text.trim();
+        int i = 0;
+        boolean negative = false;
+        if (s.startsWith("-") || s.startsWith("+")) {
+            negative = s.charAt(0) == '-';
+            i = 1;
+        }
+        long rupees = 0;
+        int digits = 0;
+        for (; i < s.length() && s.charAt(i) != '.'; i++) {
+            char c = s.charAt(i);
+            if (c == ',') continue;
+            if (c < '0' || c > '9') throw new NumberFormatException("Invalid amount: " + text);
+            rupees = rupees * 10 + (c - '0');
+            if (++digits > 13) throw new NumberFormatException("Amount too large: " + text);
+        }
+        long paise = 0;
+        int decimals = 0;
+        if (i < s.length()) {
+            for (i++; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9' || ++decimals > SCALE) throw new NumberFormatException("Invalid amount: " + text);
+                paise = paise * 10 + (c - '0');
+            }
+        }
+        if (digits == 0 && decimals == 0) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        if (decimals == 1) paise *= 10;
+        long value = rupees * PAISE_PER_RUPEE + paise;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Format as rupees with grouping and two decimals, e.g. 125050 -> "1,250.50"
+     */
+    public static String format(long paise) {
+        long abs = Math.abs(paise);
+        return String.format("%s%,d.%02d", paise < 0 ? "-" : "", abs / PAISE_PER_RUPEE, abs % PAISE_PER_RUPEE);
+    }
+
+    /**
+     * Exact decimal for binding to a NUMBER(15,2) column
+     */
+    public static BigDecimal toDecimal(long paise) {
+        return BigDecimal.valueOf(paise, SCALE);
+    }
+
+    /**
+     * Paise from a NUMBER(15,2) value; null reads as zero
+     * @throws ArithmeticException if the value has more than two decimals
+     */
+    public static long fromDecimal(BigDecimal value) {
+        return value == null ? 0 : value.movePointRight(SCALE).longValueExact();
+    }
+}
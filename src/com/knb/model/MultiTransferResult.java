@@ -0,0 +1,49 @@
+package com.knb.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * MultiTransferResult model describing the outcome of a one-to-many transfer
+ * The valid legs either all commit or none do; each leg records its own status
+ */
+public class MultiTransferResult {
+    public enum Status { SUCCESS, INSUFFICIENT_FUNDS, ACCOUNT_NOT_FOUND, NO_VALID_LEGS }
+
+    private final Status status;
+    private final long fromBalance;  // paise
+    private final long totalDebited;
+    private final List<TransferLeg> legs;
+
+    public MultiTransferResult(Status status, long fromBalance, long totalDebited, List<TransferLeg> legs) {
+        this.status = status;
+        this.fromBalance = fromBalance;
+        this.totalDebited = totalDebited;
+        this.legs = Collections.unmodifiableList(legs);
+    }
+
+    // Getters
+    public Status getStatus() { return status; }
+    public boolean isSuccess() { return status == Status.SUCCESS; }
+    public long getFromBalance() { return fromBalance; }
+    public long getTotalDebited() { return totalDebited; }
+    public List<TransferLeg> getLegs() { return legs; }
+
+    public int getCreditedLegs() {
+        int count = 0;
+        for (TransferLeg leg : legs) {
+            if (leg.getStatus() == TransferLeg.Status.CREDITED) count++;
+        }
+        return count;
+    }
+
+    public int getFailedLegs() {
+        return legs.size() - getCreditedLegs();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MultiTransfer[%s] - %d/%d legs, debited ₹%s, balance ₹%s",
+                status, getCreditedLegs(), legs.size(), Money.format(totalDebited), Money.format(fromBalance));
+    }
+}
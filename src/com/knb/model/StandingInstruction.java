@@ -0,0 +1,92 @@
+package com.knb.model;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * StandingInstruction model for a scheduled or recurring utility payment
+ * Immutable; processing a run yields a copy with the next due time and the outcome
+ */
+public class StandingInstruction {
+    public enum Frequency { ONCE, DAILY, WEEKLY, MONTHLY }
+    public enum Status { ACTIVE, PAUSED, COMPLETED, FAILED }
+    public enum Result { PAID, INSUFFICIENT_FUNDS, ACCOUNT_NOT_FOUND, SKIPPED }
+
+    private final long id;
+    private final int acno;
+    private final String utilityName;
+    private final long amount;  // paise
+    private final Frequency frequency;
+    private final Timestamp nextRun;
+    private final Status status;
+    private final Result lastResult;
+
+    public StandingInstruction(long id, int acno, String utilityName, long amount, Frequency frequency,
+                               Timestamp nextRun, Status status, Result lastResult) {
+        this.id = id;
+        this.acno = acno;
+        this.utilityName = utilityName;
+        this.amount = amount;
+        this.frequency = frequency;
+        this.nextRun = nextRun;
+        this.status = status;
+        this.lastResult = lastResult;
+    }
+
+    /**
+     * Due time of the run after the given one, or null for a one-off payment
+     */
+    public Timestamp followingRun(Timestamp run) {
+        LocalDateTime t = run.toLocalDateTime();
+        switch (frequency) {
+            case DAILY: return Timestamp.valueOf(t.plusDays(1));
+            case WEEKLY: return Timestamp.valueOf(t.plusWeeks(1));
+            case MONTHLY: return Timestamp.valueOf(t.plusMonths(1));
+            default: return null;
+        }
+    }
+
+    /**
+     * This instruction after its current run had the given outcome
+     * A one-off instruction completes once paid and fails otherwise; a recurring
+     * one stays active and moves to its next run, so an unpaid run is not retried.
+     */
+    public StandingInstruction afterRun(Result result) {
+        if (result == Result.SKIPPED) {
+            return new StandingInstruction(id, acno, utilityName, amount, frequency, nextRun, status, result);
+        }
+        Timestamp next = followingRun(nextRun);
+        Status newStatus = Status.ACTIVE;
+        if (result == Result.ACCOUNT_NOT_FOUND || (next == null && result != Result.PAID)) {
+            newStatus = Status.FAILED;
+        } else if (next == null) {
+            newStatus = Status.COMPLETED;
+        }
+        return new StandingInstruction(id, acno, utilityName, amount, frequency,
+                next != null ? next : nextRun, newStatus, result);
+    }
+
+    // Getters
+    public long getId() { return id; }
+    public int getAcno() { return acno; }
+    public String getUtilityName() { return utilityName; }
+    public long getAmount() { return amount; }
+    public Frequency getFrequency() { return frequency; }
+    public Timestamp getNextRun() { return nextRun; }
+    public Status getStatus() { return status; }
+    public Result getLastResult() { return lastResult; }
+    public boolean isActive() { return status == Status.ACTIVE; }
+
+    /**
+     * Ledger remarks for a payment made under this instruction
+     */
+    public String getRemarks() {
+        return "Paid " + utilityName + " (standing instruction " + id + ")";
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StandingInstruction[%d] %d -> %s ₹%s %s next %s (%s)",
+                id, acno, utilityName, Money.format(amount), frequency, nextRun, status);
+    }
+}
@@ -0,0 +1,47 @@
+package com.knb.model;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * StatementPage model holding one page of an account statement
+ * Carries the keyset cursor needed to fetch the following page
+ */
+public class StatementPage {
+    private final List<Transaction> transactions;
+    private final Cursor nextCursor;
+
+    public StatementPage(List<Transaction> transactions, Cursor nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Position after the last row of a page, ordered by (date_time, tx_id) descending
+     */
+    public static class Cursor {
+        public final Timestamp dateTime;
+        public final int txId;
+
+        public Cursor(Timestamp dateTime, int txId) {
+            this.dateTime = dateTime;
+            this.txId = txId;
+        }
+
+        @Override
+        public String toString() {
+            return "Cursor[" + dateTime + ", " + txId + "]";
+        }
+    }
+
+    // Getters
+    public List<Transaction> getTransactions() { return Collections.unmodifiableList(transactions); }
+    public Cursor getNextCursor() { return nextCursor; }
+    public boolean hasMore() { return nextCursor != null; }
+
+    @Override
+    public String toString() {
+        return String.format("StatementPage[%d rows, more=%s]", transactions.size(), hasMore());
+    }
+}
@@ -0,0 +1,31 @@
+package com.knb.model;
+
+/**
+ * SystemStats model holding the headline counts shown on admin dashboards
+ * Captured together so the figures are consistent with each other
+ */
+public class SystemStats {
+    private final long userCount;
+    private final long accountCount;
+    private final long transactionCount;
+    private final long pendingUserCount;
+
+    public SystemStats(long userCount, long accountCount, long transactionCount, long pendingUserCount) {
+        this.userCount = userCount;
+        this.accountCount = accountCount;
+        this.transactionCount = transactionCount;
+        this.pendingUserCount = pendingUserCount;
+    }
+
+    // Getters
+    public long getUserCount() { return userCount; }
+    public long getAccountCount() { return accountCount; }
+    public long getTransactionCount() { return transactionCount; }
+    public long getPendingUserCount() { return pendingUserCount; }
+
+    @Override
+    public String toString() {
+        return String.format("Stats[users=%d, accounts=%d, transactions=%d, pending=%d]",
+                userCount, accountCount, transactionCount, pendingUserCount);
+    }
+}
@@ -9,11 +9,17 @@ import java.sql.Timestamp;
 public class Transaction {
     public int txId, acno, fromAcno, toAcno;
     public String type, status, remarks;
-    public double amount;
+    public long amount;  // paise
+    public Long balanceAfter;  // paise; null on rows written before balances were recorded
     public Timestamp dateTime;
 
-    public Transaction(int txId, int acno, int fromAcno, int toAcno, String type, double amount, 
+    public Transaction(int txId, int acno, int fromAcno, int toAcno, String type, long amount, 
                       Timestamp dateTime, String status, String remarks) {
+        this(txId, acno, fromAcno, toAcno, type, amount, dateTime, status, remarks, null);
+    }
+
+    public Transaction(int txId, int acno, int fromAcno, int toAcno, String type, long amount,
+                      Timestamp dateTime, String status, String remarks, Long balanceAfter) {
         this.txId = txId;
         this.acno = acno;
         this.fromAcno = fromAcno;
@@ -23,10 +29,18 @@ public class Transaction {
         this.dateTime = dateTime;
         this.status = status;
         this.remarks = remarks;
+        this.balanceAfter = balanceAfter;
+    }
+
+    /**
+     * Signed effect on the account's balance: credits positive, debits negative
+     */
+    public long signedAmount() {
+        return toAcno == acno ? amount : -amount;
     }
 
     @Override
     public String toString() {
-        return String.format("Transaction[%d] - %s: ₹%,.2f (%s)", txId, type, amount, status);
+        return String.format("Transaction[%d] - %s: ₹%s (%s)", txId, type, Money.format(amount), status);
     }
 }
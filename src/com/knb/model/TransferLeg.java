@@ -0,0 +1,35 @@
+package com.knb.model;
+
+/**
+ * TransferLeg model for one recipient of a multi-leg transfer
+ * Carries the requested credit and, once processed, what happened to it
+ */
+public class TransferLeg {
+    public enum Status { PENDING, CREDITED, INVALID_AMOUNT, SAME_ACCOUNT, OVER_LIMIT, ACCOUNT_NOT_FOUND, NOT_EXECUTED }
+
+    private final int toAcno;
+    private final long amount;  // paise
+    private final String remarks;
+    private Status status = Status.PENDING;
+
+    public TransferLeg(int toAcno, long amount, String remarks) {
+        this.toAcno = toAcno;
+        this.amount = amount;
+        this.remarks = remarks;
+    }
+
+    // Getters
+    public int getToAcno() { return toAcno; }
+    public long getAmount() { return amount; }
+    public String getRemarks() { return remarks; }
+    public Status getStatus() { return status; }
+    public boolean isPending() { return status == Status.PENDING; }
+
+    // Setters
+    public void setStatus(Status status) { this.status = status; }
+
+    @Override
+    public String toString() {
+        return String.format("Leg[%d] - ₹%s (%s)", toAcno, Money.format(amount), status);
+    }
+}
@@ -0,0 +1,30 @@
+package com.knb.model;
+
+/**
+ * TransferResult model describing the outcome of a funds transfer
+ * Carries the post-transfer balances read back from the database
+ */
+public class TransferResult {
+    public enum Status { SUCCESS, INSUFFICIENT_FUNDS, ACCOUNT_NOT_FOUND }
+
+    private final Status status;
+    private final long fromBalance;  // paise
+    private final long toBalance;
+
+    public TransferResult(Status status, long fromBalance, long toBalance) {
+        this.status = status;
+        this.fromBalance = fromBalance;
+        this.toBalance = toBalance;
+    }
+
+    // Getters
+    public Status getStatus() { return status; }
+    public boolean isSuccess() { return status == Status.SUCCESS; }
+    public long getFromBalance() { return fromBalance; }
+    public long getToBalance() { return toBalance; }
+
+    @Override
+    public String toString() {
+        return String.format("Transfer[%s] - from ₹%s, to ₹%s", status, Money.format(fromBalance), Money.format(toBalance));
+    }
+}
@@ -0,0 +1,37 @@
+package com.knb.repository;
+
+import com.knb.model.Account;
+import com.knb.model.BatchResult;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * AccountRepository defines storage operations for bank accounts
+ * Implemented by the Oracle-backed DatabaseManager and the in-memory engine
+ */
+public interface AccountRepository {
+    Account getAccount(int acno) throws Exception;
+
+    Account getAccountByUserId(int userId) throws Exception;
+
+    List<Account> getAllAccounts() throws Exception;
+
+    void forEachAccount(RowHandler<Account> handler) throws Exception;
+
+    List<Account> getAccountsForBranchSummary() throws Exception;
+
+    /**
+     * Create an account; fails if the user already has one
+     */
+    void addAccount(int userId, String name, long balance, String mobile, String type) throws Exception;
+
+    /**
+     * Create many accounts in one batch; acno and status of the inputs are ignored
+     */
+    BatchResult addAccounts(Collection<Account> accounts) throws Exception;
+
+    void updateAccount(int acno, long newBalance) throws Exception;
+
+    int getAccountCount() throws Exception;
+}
@@ -0,0 +1,15 @@
+package com.knb.repository;
+
+import com.knb.model.AuditEntry;
+
+import java.util.List;
+
+/**
+ * AuditRepository defines storage for the audit trail
+ * Implemented by the Oracle-backed DatabaseManager and the in-memory engine
+ */
+public interface AuditRepository {
+    void logAudit(int userId, String action, String details) throws Exception;
+
+    List<AuditEntry> getAuditLogs(int limit) throws Exception;
+}
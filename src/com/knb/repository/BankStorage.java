@@ -0,0 +1,16 @@
+package com.knb.repository;
+
+import com.knb.model.SystemStats;
+
+/**
+ * BankStorage groups every repository the application needs
+ * Services and views depend on this instead of a concrete backend
+ */
+public interface BankStorage extends UserRepository, AccountRepository, TransactionRepository,
+        InstructionRepository, InterestRepository, ReconciliationRepository, AuditRepository, ConfigRepository {
+
+    /**
+     * Get user, account, transaction and pending-approval counts in one call
+     */
+    SystemStats getSystemStats() throws Exception;
+}
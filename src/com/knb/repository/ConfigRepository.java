@@ -0,0 +1,62 @@
+package com.knb.repository;
+
+import com.knb.model.Money;
+
+/**
+ * ConfigRepository defines key/value system configuration storage
+ * Implementations are expected to serve reads from memory
+ */
+public interface ConfigRepository {
+    String getConfigValue(String key) throws Exception;
+
+    void setConfigValue(String key, String value) throws Exception;
+
+    void deleteConfigValue(String key) throws Exception;
+
+    /**
+     * Get a numeric configuration value, falling back when unset or malformed
+     */
+    default double getConfigDouble(String key, double defaultValue) throws Exception {
+        String value = getConfigValue(key);
+        if (value == null) return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get a rupee amount configuration value in paise, falling back when unset or malformed
+     */
+    default long getConfigMoney(String key, long defaultPaise) throws Exception {
+        String value = getConfigValue(key);
+        if (value == null) return defaultPaise;
+        try {
+            return Money.parse(value);
+        } catch (NumberFormatException e) {
+            return defaultPaise;
+        }
+    }
+
+    /**
+     * Get a boolean configuration value; anything other than "true" reads as false
+     */
+    default boolean getConfigBoolean(String key, boolean defaultValue) throws Exception {
+        String value = getConfigValue(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Get an integer configuration value, falling back when unset or malformed
+     */
+    default int getConfigInt(String key, int defaultValue) throws Exception {
+        String value = getConfigValue(key);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
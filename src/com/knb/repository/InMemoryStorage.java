@@ -0,0 +1,905 @@
+package com.knb.repository;
+
+import com.knb.model.Account;
+import com.knb.model.AccountReconciliation;
+import com.knb.model.AuditEntry;
+import com.knb.model.BatchResult;
+import com.knb.model.IdempotencyRecord;
+import com.knb.model.InterestChunk;
+import com.knb.model.LedgerOp;
+import com.knb.model.Money;
+import com.knb.model.MultiTransferResult;
+import com.knb.model.StandingInstruction;
+import com.knb.model.StatementPage;
+import com.knb.model.SystemStats;
+import com.knb.model.Transaction;
+import com.knb.model.TransferLeg;
+import com.knb.model.TransferResult;
+import com.knb.model.User;
+
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * InMemoryStorage is a thread-safe, service-free implementation of BankStorage
+ * Used for load testing the services and for running the application in demo mode
+ *
+ * Users and accounts live in int-keyed maps guarded by read/write locks. Each
+ * account row is its own monitor for balance and ledger changes, and transfers
+ * lock both rows in acno order so they are atomic and cannot deadlock.
+ */
+public class InMemoryStorage implements BankStorage {
+    private static final int FIRST_ACNO = 10000;
+    private static final int MAX_AUDIT_ENTRIES = 100_000;
+
+    private final ReentrantReadWriteLock userLock = new ReentrantReadWriteLock();
+    private final IntObjectMap<UserRow> users = new IntObjectMap<>(1024);
+    private final Map<String, UserRow> usersByName = new HashMap<>();
+    private final AtomicInteger userIds = new AtomicInteger();
+
+    private final ReentrantReadWriteLock accountLock = new ReentrantReadWriteLock();
+    private final IntObjectMap<AccountRow> accounts = new IntObjectMap<>(1024);
+    private final IntObjectMap<AccountRow> accountsByUser = new IntObjectMap<>(1024);
+    private final AtomicInteger accountNumbers = new AtomicInteger(FIRST_ACNO - 1);
+
+    private final AtomicInteger txIds = new AtomicInteger();
+    private final AtomicInteger transactionCount = new AtomicInteger();
+
+    private final ArrayDeque<AuditEntry> auditLog = new ArrayDeque<>();
+    private final AtomicInteger auditIds = new AtomicInteger();
+
+    private final Map<String, String> config = new ConcurrentHashMap<>();
+    private final Map<String, IdempotencyRecord> idempotencyKeys = new ConcurrentHashMap<>();
+    private final Map<String, Long> ledgerWatermarks = new ConcurrentHashMap<>();
+
+    // Guarded by its own monitor, which runInstructions holds for a whole batch
+    private final Map<Long, StandingInstruction> instructions = new TreeMap<>();
+    private final AtomicLong instructionIds = new AtomicLong();
+
+    // Keyed by run id and first account; a chunk is claimed before it is posted
+    private final Map<String, InterestChunk> interestChunks = new ConcurrentHashMap<>();
+
+    // Run id -> acno -> mismatch
+    private final Map<String, Map<Integer, AccountReconciliation>> mismatches = new ConcurrentHashMap<>();
+
+    private static class UserRow {
+        final int userId;
+        final String username;
+        String password, name, email, mobile, role, status;
+
+        UserRow(int userId, String username) {
+            this.userId = userId;
+            this.username = username;
+        }
+
+        User toUser() {
+            return new User(userId, username, null, name, email, mobile, role, status);
+        }
+    }
+
+    private static class AccountRow {
+        final int acno, userId;
+        final String name, type;
+        String mobile, status;
+        long balance;  // paise
+        // Ascending by tx_id; guarded by this row's monitor
+        final List<Transaction> ledger = new ArrayList<>();
+
+        AccountRow(int acno, int userId, String name, long balance, String mobile, String type) {
+            this.acno = acno;
+            this.userId = userId;
+            this.name = name;
+            this.balance = balance;
+            this.mobile = mobile;
+            this.type = type;
+            this.status = "ACTIVE";
+        }
+
+        synchronized Account toAccount() {
+            return new Account(acno, userId, name, balance, mobile, type, status);
+        }
+    }
+
+    /**
+     * Create a store holding the same default users and client account as db/schema.sql
+     */
+    public static InMemoryStorage withDemoData() {
+        InMemoryStorage store = new InMemoryStorage();
+        try {
+            store.addUser("Prak", "prak05", "Prak", null, null, "admin");
+            store.addUser("AdithyaBaiju", "adi05", "Adithya Baiju", null, null, "manager");
+            store.addUser("client01", "cli05", "Prakhar Sharma", "prakhar@mail.com", "9876543210", "client");
+            for (User u : store.getAllUsers()) {
+                store.updateUserStatus(u.getUserId(), "ACTIVE");
+            }
+            User client = store.getUserByCredentials("client01", "cli05");
+            store.addAccount(client.getUserId(), client.getName(), Money.ofRupees(5000), client.getMobile(), "SAVINGS");
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not seed demo data", e);
+        }
+        return store;
+    }
+
+    // ==================== USER OPERATIONS ====================
+
+    public User getUserByCredentials(String username, String password) {
+        userLock.readLock().lock();
+        try {
+            UserRow row = usersByName.get(username);
+            return row != null && row.password.equals(password) ? row.toUser() : null;
+        } finally {
+            userLock.readLock().unlock();
+        }
+    }
+
+    public User getUserById(int id) {
+        userLock.readLock().lock();
+        try {
+            UserRow row = users.get(id);
+            return row == null ? null : row.toUser();
+        } finally {
+            userLock.readLock().unlock();
+        }
+    }
+
+    public List<User> getAllUsers() {
+        List<User> list = new ArrayList<>();
+        userLock.readLock().lock();
+        try {
+            users.forEachValue(row -> list.add(row.toUser()));
+        } finally {
+            userLock.readLock().unlock();
+        }
+        list.sort((a, b) -> Integer.compare(a.getUserId(), b.getUserId()));
+        return list;
+    }
+
+    public void forEachUser(RowHandler<User> handler) throws Exception {
+        for (User user : getAllUsers()) {
+            handler.handle(user);
+        }
+    }
+
+    public List<User> getUsersByRole(String role) {
+        List<User> list = new ArrayList<>();
+        for (User user : getAllUsers()) {
+            if (role.equals(user.getRole()) && "ACTIVE".equals(user.getStatus())) list.add(user);
+        }
+        return list;
+    }
+
+    public List<User> getPendingUsers() {
+        List<User> list = new ArrayList<>();
+        for (User user : getAllUsers()) {
+            if ("PENDING".equals(user.getStatus())) list.add(user);
+        }
+        return list;
+    }
+
+    public List<User> getTopCustomers() {
+        List<Account> all = getAllAccounts();
+        all.sort((a, b) -> Long.compare(b.getBalance(), a.getBalance()));
+        List<User> ret = new ArrayList<>();
+        for (Account account : all) {
+            if (ret.size() == 10) break;
+            User user = getUserById(account.getUserId());
+            if (user != null) ret.add(user);
+        }
+        return ret;
+    }
+
+    public void addUser(String username, String password, String name, String email, String mobile, String role) throws Exception {
+        userLock.writeLock().lock();
+        try {
+            if (usersByName.containsKey(username)) {
+                throw new Exception("Username already exists: " + username);
+            }
+            UserRow row = new UserRow(userIds.incrementAndGet(), username);
+            row.password = password;
+            row.name = name;
+            row.email = email;
+            row.mobile = mobile;
+            row.role = role;
+            row.status = "PENDING";
+            users.put(row.userId, row);
+            usersByName.put(username, row);
+        } finally {
+            userLock.writeLock().unlock();
+        }
+    }
+
+    public void updateUser(int userId, String name, String email, String mobile, String status) {
+        withUser(userId, row -> {
+            row.name = name;
+            row.email = email;
+            row.mobile = mobile;
+            row.status = status;
+        });
+    }
+
+    public void updateUserRole(int userId, String role) {
+        withUser(userId, row -> row.role = role);
+    }
+
+    public void updateUserStatus(int userId, String status) {
+        withUser(userId, row -> row.status = status);
+    }
+
+    public void setUserPassword(int userId, String password) {
+        withUser(userId, row -> row.password = password);
+    }
+
+    public void deleteUser(int userId) throws Exception {
+        accountLock.readLock().lock();
+        try {
+            if (accountsByUser.containsKey(userId)) {
+                throw new Exception("Cannot delete a user with a linked bank account.");
+            }
+        } finally {
+            accountLock.readLock().unlock();
+        }
+        userLock.writeLock().lock();
+        try {
+            UserRow row = users.remove(userId);
+            if (row != null) usersByName.remove(row.username);
+        } finally {
+            userLock.writeLock().unlock();
+        }
+    }
+
+    public int getUserCount() {
+        userLock.readLock().lock();
+        try {
+            return users.size();
+        } finally {
+            userLock.readLock().unlock();
+        }
+    }
+
+    private void withUser(int userId, java.util.function.Consumer<UserRow> change) {
+        userLock.writeLock().lock();
+        try {
+            UserRow row = users.get(userId);
+            if (row != null) change.accept(row);
+        } finally {
+            userLock.writeLock().unlock();
+        }
+    }
+
+    // ==================== ACCOUNT OPERATIONS ====================
+
+    public Account getAccount(int acno) {
+        AccountRow row = findAccount(acno);
+        return row == null ? null : row.toAccount();
+    }
+
+    public Account getAccountByUserId(int userId) {
+        accountLock.readLock().lock();
+        AccountRow row;
+        try {
+            row = accountsByUser.get(userId);
+        } finally {
+            accountLock.readLock().unlock();
+        }
+        return row == null ? null : row.toAccount();
+    }
+
+    public List<Account> getAllAccounts() {
+        List<AccountRow> rows = new ArrayList<>();
+        accountLock.readLock().lock();
+        try {
+            accounts.forEachValue(rows::add);
+        } finally {
+            accountLock.readLock().unlock();
+        }
+        rows.sort((a, b) -> Integer.compare(a.acno, b.acno));
+        List<Account> list = new ArrayList<>(rows.size());
+        for (AccountRow row : rows) list.add(row.toAccount());
+        return list;
+    }
+
+    public void forEachAccount(RowHandler<Account> handler) throws Exception {
+        for (Account account : getAllAccounts()) {
+            handler.handle(account);
+        }
+    }
+
+    public List<Account> getAccountsForBranchSummary() {
+        return getAllAccounts();
+    }
+
+    public void addAccount(int userId, String name, long balance, String mobile, String type) throws Exception {
+        accountLock.writeLock().lock();
+        try {
+            if (accountsByUser.containsKey(userId)) {
+                throw new Exception("This user already has a bank account linked.");
+            }
+            AccountRow row = new AccountRow(accountNumbers.incrementAndGet(), userId, name, balance, mobile, type);
+            accounts.put(row.acno, row);
+            accountsByUser.put(userId, row);
+        } finally {
+            accountLock.writeLock().unlock();
+        }
+    }
+
+    public BatchResult addAccounts(Collection<Account> newAccounts) {
+        BatchResult result = new BatchResult(newAccounts.size());
+        long start = System.nanoTime();
+        int index = 0;
+        accountLock.writeLock().lock();
+        try {
+            for (Account a : newAccounts) {
+                if (accountsByUser.containsKey(a.getUserId())) {
+                    result.addFailure(index, "This user already has a bank account linked.");
+                } else {
+                    AccountRow row = new AccountRow(accountNumbers.incrementAndGet(), a.getUserId(), a.getName(),
+                            a.getBalance(), a.getMobileNumber(), a.getAccountType());
+                    accounts.put(row.acno, row);
+                    accountsByUser.put(row.userId, row);
+                    result.addSucceeded(1);
+                }
+                index++;
+            }
+        } finally {
+            accountLock.writeLock().unlock();
+        }
+        result.setElapsedNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    public void updateAccount(int acno, long newBalance) {
+        AccountRow row = findAccount(acno);
+        if (row != null) {
+            synchronized (row) {
+                row.balance = newBalance;
+            }
+        }
+    }
+
+    public int getAccountCount() {
+        accountLock.readLock().lock();
+        try {
+            return accounts.size();
+        } finally {
+            accountLock.readLock().unlock();
+        }
+    }
+
+    private AccountRow findAccount(int acno) {
+        accountLock.readLock().lock();
+        try {
+            return accounts.get(acno);
+        } finally {
+            accountLock.readLock().unlock();
+        }
+    }
+
+    // ==================== TRANSACTION OPERATIONS ====================
+
+    public void addTransaction(int acno, String type, long amount, int fromAcno, int toAcno, String status, String remarks,
+                               long balanceAfter) throws Exception {
+        AccountRow row = findAccount(acno);
+        if (row == null) {
+            throw new Exception("Account not found: " + acno);
+        }
+        synchronized (row) {
+            appendLedger(row, type, amount, fromAcno, toAcno, status, remarks, balanceAfter);
+        }
+    }
+
+    public BatchResult addTransactions(Collection<Transaction> transactions) {
+        BatchResult result = new BatchResult(transactions.size());
+        long start = System.nanoTime();
+        int index = 0;
+        for (Transaction tx : transactions) {
+            AccountRow row = findAccount(tx.acno);
+            if (row == null) {
+                result.addFailure(index, "Account not found: " + tx.acno);
+            } else {
+                synchronized (row) {
+                    appendLedger(row, tx.type, tx.amount, tx.fromAcno, tx.toAcno, tx.status, tx.remarks, tx.balanceAfter);
+                }
+                result.addSucceeded(1);
+            }
+            index++;
+        }
+        result.setElapsedNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    public TransferResult transferFunds(int fromAcno, int toAcno, long amount) {
+        AccountRow from = findAccount(fromAcno);
+        AccountRow to = findAccount(toAcno);
+        if (from == null || to == null) {
+            return new TransferResult(TransferResult.Status.ACCOUNT_NOT_FOUND, 0, 0);
+        }
+        AccountRow first = fromAcno < toAcno ? from : to;
+        AccountRow second = first == from ? to : from;
+        synchronized (first) {
+            synchronized (second) {
+                if (from.balance < amount) {
+                    return new TransferResult(TransferResult.Status.INSUFFICIENT_FUNDS, 0, 0);
+                }
+                from.balance -= amount;
+                to.balance += amount;
+                appendLedger(from, "TRANSFER_OUT", amount, fromAcno, toAcno, "SUCCESS", "To Account " + toAcno);
+                appendLedger(to, "TRANSFER_IN", amount, fromAcno, toAcno, "SUCCESS", "From Account " + fromAcno);
+                return new TransferResult(TransferResult.Status.SUCCESS, from.balance, to.balance);
+            }
+        }
+    }
+
+    public MultiTransferResult transferMany(int fromAcno, List<TransferLeg> legs) {
+        AccountRow from = findAccount(fromAcno);
+        if (from == null) {
+            for (TransferLeg leg : legs) {
+                if (leg.isPending()) leg.setStatus(TransferLeg.Status.NOT_EXECUTED);
+            }
+            return new MultiTransferResult(MultiTransferResult.Status.ACCOUNT_NOT_FOUND, 0, 0, legs);
+        }
+        List<TransferLeg> valid = new ArrayList<>();
+        Map<Integer, AccountRow> rows = new TreeMap<>();
+        rows.put(fromAcno, from);
+        long total = 0;
+        for (TransferLeg leg : legs) {
+            if (!leg.isPending()) continue;
+            AccountRow to = findAccount(leg.getToAcno());
+            if (to == null) {
+                leg.setStatus(TransferLeg.Status.ACCOUNT_NOT_FOUND);
+                continue;
+            }
+            rows.put(to.acno, to);
+            total += leg.getAmount();
+            valid.add(leg);
+        }
+        if (valid.isEmpty()) {
+            return new MultiTransferResult(MultiTransferResult.Status.NO_VALID_LEGS, 0, 0, legs);
+        }
+        long debit = total;
+        return withRowsLocked(new ArrayList<>(rows.values()), 0, () -> {
+            if (from.balance < debit) {
+                for (TransferLeg leg : valid) leg.setStatus(TransferLeg.Status.NOT_EXECUTED);
+                return new MultiTransferResult(MultiTransferResult.Status.INSUFFICIENT_FUNDS, 0, 0, legs);
+            }
+            for (TransferLeg leg : valid) {
+                AccountRow to = rows.get(leg.getToAcno());
+                from.balance -= leg.getAmount();
+                to.balance += leg.getAmount();
+                appendLedger(from, "TRANSFER_OUT", leg.getAmount(), fromAcno, to.acno, "SUCCESS",
+                        leg.getRemarks() != null ? leg.getRemarks() : "To Account " + to.acno);
+                appendLedger(to, "TRANSFER_IN", leg.getAmount(), fromAcno, to.acno, "SUCCESS", "From Account " + fromAcno);
+                leg.setStatus(TransferLeg.Status.CREDITED);
+            }
+            return new MultiTransferResult(MultiTransferResult.Status.SUCCESS, from.balance, debit, legs);
+        });
+    }
+
+    public List<TransferResult> applyLedgerBatch(List<LedgerOp> ops) {
+        Map<Integer, AccountRow> rows = new TreeMap<>();
+        for (LedgerOp op : ops) {
+            for (int acno : new int[]{op.getFromAcno(), op.getToAcno()}) {
+                AccountRow row = acno == 0 ? null : findAccount(acno);
+                if (row != null) rows.put(acno, row);
+            }
+        }
+        return withRowsLocked(new ArrayList<>(rows.values()), 0, () -> {
+            List<TransferResult> results = new ArrayList<>(ops.size());
+            for (LedgerOp op : ops) {
+                AccountRow from = rows.get(op.getFromAcno());
+                AccountRow to = rows.get(op.getToAcno());
+                long amount = op.getAmount();
+                if ((op.getFromAcno() != 0 && from == null) || (op.getToAcno() != 0 && to == null)) {
+                    results.add(new TransferResult(TransferResult.Status.ACCOUNT_NOT_FOUND, 0, 0));
+                    continue;
+                }
+                if (from != null && from.balance < amount) {
+                    results.add(new TransferResult(TransferResult.Status.INSUFFICIENT_FUNDS, 0, 0));
+                    continue;
+                }
+                if (from != null) from.balance -= amount;
+                if (to != null) to.balance += amount;
+                if (op.isTransfer()) {
+                    appendLedger(from, "TRANSFER_OUT", amount, from.acno, to.acno, "SUCCESS", "To Account " + to.acno);
+                    appendLedger(to, "TRANSFER_IN", amount, from.acno, to.acno, "SUCCESS", "From Account " + from.acno);
+                } else {
+                    appendLedger(from != null ? from : to, op.getType(), amount, op.getFromAcno(), op.getToAcno(),
+                            "SUCCESS", op.getRemarks());
+                }
+                results.add(new TransferResult(TransferResult.Status.SUCCESS,
+                        from != null ? from.balance : 0, to != null ? to.balance : 0));
+            }
+            return results;
+        });
+    }
+
+    public synchronized void applyJournaledOps(String journalId, long lastSeq, List<LedgerOp> ops) {
+        if (getLedgerWatermark(journalId) >= lastSeq) {
+            return;
+        }
+        Map<Integer, AccountRow> rows = new TreeMap<>();
+        for (LedgerOp op : ops) {
+            for (int acno : new int[]{op.getFromAcno(), op.getToAcno()}) {
+                AccountRow row = acno == 0 ? null : findAccount(acno);
+                if (row != null) rows.put(acno, row);
+            }
+        }
+        withRowsLocked(new ArrayList<>(rows.values()), 0, () -> {
+            for (LedgerOp op : ops) {
+                AccountRow from = rows.get(op.getFromAcno());
+                AccountRow to = rows.get(op.getToAcno());
+                long amount = op.getAmount();
+                if (from != null) from.balance -= amount;
+                if (to != null) to.balance += amount;
+                if (op.isTransfer()) {
+                    if (from != null) appendLedger(from, "TRANSFER_OUT", amount, op.getFromAcno(), op.getToAcno(),
+                            "SUCCESS", "To Account " + op.getToAcno());
+                    if (to != null) appendLedger(to, "TRANSFER_IN", amount, op.getFromAcno(), op.getToAcno(),
+                            "SUCCESS", "From Account " + op.getFromAcno());
+                } else if (from != null || to != null) {
+                    appendLedger(from != null ? from : to, op.getType(), amount, op.getFromAcno(), op.getToAcno(),
+                            "SUCCESS", op.getRemarks());
+                }
+            }
+            return null;
+        });
+        ledgerWatermarks.put(journalId, lastSeq);
+    }
+
+    public long getLedgerWatermark(String journalId) {
+        return ledgerWatermarks.getOrDefault(journalId, 0L);
+    }
+
+    /**
+     * Run action while holding the monitors of rows[index..], taken in list (acno) order
+     */
+    private <T> T withRowsLocked(List<AccountRow> rows, int index, Supplier<T> action) {
+        if (index == rows.size()) {
+            return action.get();
+        }
+        synchronized (rows.get(index)) {
+            return withRowsLocked(rows, index + 1, action);
+        }
+    }
+
+    public List<Transaction> getTransactionsForAccount(int acno) {
+        List<Transaction> ret = new ArrayList<>();
+        AccountRow row = findAccount(acno);
+        if (row != null) {
+            synchronized (row) {
+                for (int i = row.ledger.size() - 1; i >= 0; i--) ret.add(row.ledger.get(i));
+            }
+        }
+        return ret;
+    }
+
+    public StatementPage getStatementPage(int acno, Timestamp from, Timestamp to, String type,
+                                          StatementPage.Cursor after, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        List<Transaction> rows = new ArrayList<>(pageSize);
+        boolean more = false;
+        AccountRow row = findAccount(acno);
+        if (row != null) {
+            synchronized (row) {
+                for (int i = row.ledger.size() - 1; i >= 0; i--) {
+                    Transaction tx = row.ledger.get(i);
+                    if (after != null && !(tx.dateTime.before(after.dateTime)
+                            || (tx.dateTime.equals(after.dateTime) && tx.txId < after.txId))) continue;
+                    if (to != null && !tx.dateTime.before(to)) continue;
+                    if (from != null && tx.dateTime.before(from)) break;
+                    if (type != null && !type.equals(tx.type)) continue;
+                    if (rows.size() == pageSize) {
+                        more = true;
+                        break;
+                    }
+                    rows.add(tx);
+                }
+            }
+        }
+        StatementPage.Cursor next = null;
+        if (more) {
+            Transaction last = rows.get(rows.size() - 1);
+            next = new StatementPage.Cursor(last.dateTime, last.txId);
+        }
+        return new StatementPage(rows, next);
+    }
+
+    public StatementPage getFullStatementPage(int acno, Timestamp from, Timestamp to, String type,
+                                              StatementPage.Cursor after, int pageSize) {
+        // Nothing is archived in memory
+        return getStatementPage(acno, from, to, type, after, pageSize);
+    }
+
+    public long getBalanceAsOf(int acno, Timestamp asOf) throws Exception {
+        AccountRow row = findAccount(acno);
+        if (row == null) {
+            throw new Exception("Account not found: " + acno);
+        }
+        synchronized (row) {
+            long balance = row.balance;
+            for (int i = row.ledger.size() - 1; i >= 0; i--) {
+                Transaction tx = row.ledger.get(i);
+                if (!tx.dateTime.before(asOf)) {
+                    balance -= tx.signedAmount();
+                    continue;
+                }
+                return tx.balanceAfter != null ? tx.balanceAfter : balance;
+            }
+            return balance;
+        }
+    }
+
+    public int getTransactionCount() {
+        return transactionCount.get();
+    }
+
+    /**
+     * Append a ledger row stamped with the row's current balance; the caller must hold the row's monitor
+     */
+    private void appendLedger(AccountRow row, String type, long amount, int fromAcno, int toAcno,
+                              String status, String remarks) {
+        appendLedger(row, type, amount, fromAcno, toAcno, status, remarks, row.balance);
+    }
+
+    private void appendLedger(AccountRow row, String type, long amount, int fromAcno, int toAcno,
+                              String status, String remarks, Long balanceAfter) {
+        row.ledger.add(new Transaction(txIds.incrementAndGet(), row.acno, fromAcno, toAcno, type, amount,
+                new Timestamp(System.currentTimeMillis()), status, remarks, balanceAfter));
+        transactionCount.incrementAndGet();
+    }
+
+    // ==================== STANDING INSTRUCTIONS ====================
+
+    public StandingInstruction addInstruction(int acno, String utilityName, long amount,
+                                              StandingInstruction.Frequency frequency, Timestamp firstRun) {
+        StandingInstruction si = new StandingInstruction(instructionIds.incrementAndGet(), acno, utilityName, amount,
+                frequency, firstRun, StandingInstruction.Status.ACTIVE, null);
+        synchronized (instructions) {
+            instructions.put(si.getId(), si);
+        }
+        return si;
+    }
+
+    public List<StandingInstruction> getInstructionsForAccount(int acno) {
+        List<StandingInstruction> ret = new ArrayList<>();
+        synchronized (instructions) {
+            for (StandingInstruction si : instructions.values()) {
+                if (si.getAcno() == acno) ret.add(si);
+            }
+        }
+        return ret;
+    }
+
+    public void setInstructionStatus(long id, StandingInstruction.Status status) {
+        synchronized (instructions) {
+            StandingInstruction si = instructions.get(id);
+            if (si != null) {
+                instructions.put(id, new StandingInstruction(si.getId(), si.getAcno(), si.getUtilityName(),
+                        si.getAmount(), si.getFrequency(), si.getNextRun(), status, si.getLastResult()));
+            }
+        }
+    }
+
+    public void forEachInstructionDue(Timestamp from, Timestamp to, RowHandler<StandingInstruction> handler) throws Exception {
+        List<StandingInstruction> due = new ArrayList<>();
+        synchronized (instructions) {
+            for (StandingInstruction si : instructions.values()) {
+                Timestamp run = si.getNextRun();
+                if (si.isActive() && (from == null || !run.before(from)) && run.before(to)) due.add(si);
+            }
+        }
+        for (StandingInstruction si : due) {
+            handler.handle(si);
+        }
+    }
+
+    public List<StandingInstruction> runInstructions(List<StandingInstruction> due) {
+        synchronized (instructions) {
+            List<StandingInstruction> after = new ArrayList<>(due);
+            List<Integer> runnable = new ArrayList<>();
+            List<LedgerOp> ops = new ArrayList<>();
+            for (int i = 0; i < due.size(); i++) {
+                StandingInstruction si = due.get(i);
+                StandingInstruction stored = instructions.get(si.getId());
+                if (stored == null || !stored.isActive() || !stored.getNextRun().equals(si.getNextRun())) {
+                    after.set(i, si.afterRun(StandingInstruction.Result.SKIPPED));
+                    continue;
+                }
+                runnable.add(i);
+                ops.add(LedgerOp.debit("UTILITY_PAYMENT", si.getAcno(), si.getAmount(), si.getRemarks()));
+            }
+            List<TransferResult> results = applyLedgerBatch(ops);
+            for (int k = 0; k < runnable.size(); k++) {
+                int i = runnable.get(k);
+                TransferResult result = results.get(k);
+                StandingInstruction done = due.get(i).afterRun(result.isSuccess() ? StandingInstruction.Result.PAID
+                        : result.getStatus() == TransferResult.Status.INSUFFICIENT_FUNDS
+                        ? StandingInstruction.Result.INSUFFICIENT_FUNDS : StandingInstruction.Result.ACCOUNT_NOT_FOUND);
+                instructions.put(done.getId(), done);
+                after.set(i, done);
+            }
+            return after;
+        }
+    }
+
+    // ==================== INTEREST POSTING ====================
+
+    public int[] getAccountRange(String accountType) {
+        int[] range = null;
+        for (Account account : getAllAccounts()) {
+            if (accountType != null && !accountType.equals(account.getAccountType())) continue;
+            if (range == null) range = new int[]{account.getAcno(), account.getAcno()};
+            range[1] = account.getAcno();
+        }
+        return range;
+    }
+
+    public List<InterestChunk> getPostedInterestChunks(String runId) {
+        List<InterestChunk> ret = new ArrayList<>();
+        for (InterestChunk chunk : interestChunks.values()) {
+            if (chunk.getRunId().equals(runId)) ret.add(chunk);
+        }
+        ret.sort((a, b) -> Integer.compare(a.getFromAcno(), b.getFromAcno()));
+        return ret;
+    }
+
+    public InterestChunk postInterestChunk(String runId, String accountType, int fromAcno, int toAcno, int rateBps) {
+        String key = runId + ":" + fromAcno;
+        if (interestChunks.putIfAbsent(key, new InterestChunk(runId, fromAcno, toAcno, 0, 0)) != null) {
+            return null;
+        }
+        List<AccountRow> rows = new ArrayList<>();
+        accountLock.readLock().lock();
+        try {
+            accounts.forEachValue(row -> {
+                if (row.acno >= fromAcno && row.acno < toAcno && accountType.equals(row.type)) rows.add(row);
+            });
+        } finally {
+            accountLock.readLock().unlock();
+        }
+        rows.sort((a, b) -> Integer.compare(a.acno, b.acno));
+        String remarks = "Interest for " + runId;
+        InterestChunk posted = withRowsLocked(rows, 0, () -> {
+            int credited = 0;
+            long total = 0;
+            for (AccountRow row : rows) {
+                long interest = "ACTIVE".equals(row.status) ? InterestChunk.monthlyInterest(row.balance, rateBps) : 0;
+                if (interest == 0) continue;
+                row.balance += interest;
+                appendLedger(row, "INTEREST", interest, 0, row.acno, "SUCCESS", remarks);
+                credited++;
+                total += interest;
+            }
+            return new InterestChunk(runId, fromAcno, toAcno, credited, total);
+        });
+        interestChunks.put(key, posted);
+        return posted;
+    }
+
+    // ==================== RECONCILIATION ====================
+
+    /**
+     * Each account is read under its own monitor; there are no snapshots here, so
+     * the first row with a recorded balance anchors the ledger
+     */
+    public void forEachReconciliation(int fromAcno, int toAcno, RowHandler<AccountReconciliation> handler) throws Exception {
+        List<AccountRow> rows = new ArrayList<>();
+        accountLock.readLock().lock();
+        try {
+            accounts.forEachValue(row -> {
+                if (row.acno >= fromAcno && row.acno < toAcno) rows.add(row);
+            });
+        } finally {
+            accountLock.readLock().unlock();
+        }
+        rows.sort((a, b) -> Integer.compare(a.acno, b.acno));
+        for (AccountRow row : rows) {
+            AccountReconciliation reconciliation;
+            synchronized (row) {
+                long delta = 0;
+                long count = 0;
+                Long opening = null;
+                for (Transaction tx : row.ledger) {
+                    if (!"SUCCESS".equals(tx.status)) continue;
+                    if (count == 0 && tx.balanceAfter != null) opening = tx.balanceAfter - tx.signedAmount();
+                    delta += tx.signedAmount();
+                    count++;
+                }
+                reconciliation = new AccountReconciliation(row.acno, row.balance,
+                        opening == null ? null : opening + delta, count);
+            }
+            handler.handle(reconciliation);
+        }
+    }
+
+    public void saveMismatches(String runId, List<AccountReconciliation> found) {
+        Map<Integer, AccountReconciliation> run = mismatches.computeIfAbsent(runId, k -> new ConcurrentHashMap<>());
+        for (AccountReconciliation r : found) {
+            run.put(r.getAcno(), r);
+        }
+    }
+
+    public List<AccountReconciliation> getMismatches(String runId) {
+        List<AccountReconciliation> ret = new ArrayList<>(mismatches.getOrDefault(runId, Collections.emptyMap()).values());
+        ret.sort((a, b) -> Integer.compare(a.getAcno(), b.getAcno()));
+        return ret;
+    }
+
+    // ==================== IDEMPOTENCY KEYS ====================
+
+    public IdempotencyRecord claimIdempotencyKey(String key, String operation, int acno, long amount) {
+        IdempotencyRecord record = new IdempotencyRecord(key, operation, acno, amount, IdempotencyRecord.Status.PENDING);
+        return idempotencyKeys.putIfAbsent(key, record);
+    }
+
+    // Stored records are replaced rather than mutated, so readers never see a half-updated one
+    public void completeIdempotencyKey(String key, boolean succeeded) {
+        IdempotencyRecord.Status status = succeeded ? IdempotencyRecord.Status.SUCCEEDED : IdempotencyRecord.Status.FAILED;
+        idempotencyKeys.computeIfPresent(key, (k, r) -> r.getStatus() != IdempotencyRecord.Status.PENDING ? r
+                : new IdempotencyRecord(k, r.getOperation(), r.getAcno(), r.getAmount(), status));
+    }
+
+    public void releaseIdempotencyKey(String key) {
+        idempotencyKeys.computeIfPresent(key,
+                (k, record) -> record.getStatus() == IdempotencyRecord.Status.PENDING ? null : record);
+    }
+
+    public void markIdempotencyKeyUnknown(String key) {
+        idempotencyKeys.computeIfPresent(key, (k, r) -> r.getStatus() != IdempotencyRecord.Status.PENDING ? r
+                : new IdempotencyRecord(k, r.getOperation(), r.getAcno(), r.getAmount(), IdempotencyRecord.Status.UNKNOWN));
+    }
+
+    // ==================== STATISTICS ====================
+
+    public SystemStats getSystemStats() {
+        return new SystemStats(getUserCount(), getAccountCount(), getTransactionCount(), getPendingUsers().size());
+    }
+
+    // ==================== AUDIT ====================
+
+    public void logAudit(int userId, String action, String details) {
+        AuditEntry entry = new AuditEntry(auditIds.incrementAndGet(), userId,
+                new Timestamp(System.currentTimeMillis()), action, details);
+        synchronized (auditLog) {
+            auditLog.addLast(entry);
+            if (auditLog.size() > MAX_AUDIT_ENTRIES) auditLog.removeFirst();
+        }
+    }
+
+    public List<AuditEntry> getAuditLogs(int limit) {
+        List<AuditEntry> list = new ArrayList<>(Math.min(limit, MAX_AUDIT_ENTRIES));
+        synchronized (auditLog) {
+            Iterator<AuditEntry> newestFirst = auditLog.descendingIterator();
+            while (newestFirst.hasNext() && list.size() < limit) list.add(newestFirst.next());
+        }
+        return list;
+    }
+
+    // ==================== CONFIGURATION ====================
+
+    public String getConfigValue(String key) {
+        return config.get(key);
+    }
+
+    public void setConfigValue(String key, String value) {
+        config.put(key, value);
+    }
+
+    public void deleteConfigValue(String key) {
+        config.remove(key);
+    }
+}
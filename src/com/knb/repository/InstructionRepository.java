@@ -0,0 +1,37 @@
+package com.knb.repository;
+
+import com.knb.model.StandingInstruction;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * InstructionRepository defines storage for standing instructions
+ * Implemented by the Oracle-backed DatabaseManager and the in-memory engine
+ */
+public interface InstructionRepository {
+    /**
+     * Store a new ACTIVE instruction
+     * @return The instruction with its assigned id
+     */
+    StandingInstruction addInstruction(int acno, String utilityName, long amount,
+                                       StandingInstruction.Frequency frequency, Timestamp firstRun) throws Exception;
+
+    List<StandingInstruction> getInstructionsForAccount(int acno) throws Exception;
+
+    void setInstructionStatus(long id, StandingInstruction.Status status) throws Exception;
+
+    /**
+     * Stream ACTIVE instructions due in [from, to) through a handler; a null from means no lower bound
+     */
+    void forEachInstructionDue(Timestamp from, Timestamp to, RowHandler<StandingInstruction> handler) throws Exception;
+
+    /**
+     * Pay the current run of each instruction and advance it, all in one transaction
+     * An instruction whose stored run no longer matches (already paid, paused or
+     * edited since it was read) is left alone and comes back SKIPPED, so a run is
+     * never paid twice however often it is submitted.
+     * @return Each instruction after its run, in the same order
+     */
+    List<StandingInstruction> runInstructions(List<StandingInstruction> due) throws Exception;
+}
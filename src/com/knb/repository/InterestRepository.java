@@ -0,0 +1,31 @@
+package com.knb.repository;
+
+import com.knb.model.InterestChunk;
+
+import java.util.List;
+
+/**
+ * InterestRepository defines storage for month-end interest posting
+ * Implemented by the Oracle-backed DatabaseManager and the in-memory engine
+ */
+public interface InterestRepository {
+    /**
+     * Lowest and highest account number of the given type (any type if null), or null if there are none
+     */
+    int[] getAccountRange(String accountType) throws Exception;
+
+    /**
+     * Chunks of a run already posted, ordered by fromAcno
+     */
+    List<InterestChunk> getPostedInterestChunks(String runId) throws Exception;
+
+    /**
+     * Credit a month's interest to every ACTIVE account of the type in [fromAcno, toAcno)
+     * The credits, their ledger rows and the chunk's checkpoint commit together, so
+     * a chunk is either fully posted for the run or not at all.
+     * @param rateBps Annual rate in basis points
+     * @return The posted chunk, or null if it was already posted for this run
+     */
+    InterestChunk postInterestChunk(String runId, String accountType, int fromAcno, int toAcno, int rateBps)
+            throws Exception;
+}
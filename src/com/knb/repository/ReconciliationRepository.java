@@ -0,0 +1,27 @@
+package com.knb.repository;
+
+import com.knb.model.AccountReconciliation;
+
+import java.util.List;
+
+/**
+ * ReconciliationRepository defines storage for checking balances against the ledger
+ * Implemented by the Oracle-backed DatabaseManager and the in-memory engine
+ */
+public interface ReconciliationRepository {
+    /**
+     * Stream each account in [fromAcno, toAcno) with its ledger totals, in acno order
+     * The stored balance and the ledger are read as of one point in time.
+     */
+    void forEachReconciliation(int fromAcno, int toAcno, RowHandler<AccountReconciliation> handler) throws Exception;
+
+    /**
+     * Record mismatched accounts under a reconciliation run, replacing any earlier entry for the same run
+     */
+    void saveMismatches(String runId, List<AccountReconciliation> mismatches) throws Exception;
+
+    /**
+     * Mismatches recorded under a run, in acno order
+     */
+    List<AccountReconciliation> getMismatches(String runId) throws Exception;
+}
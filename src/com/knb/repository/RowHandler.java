@@ -0,0 +1,15 @@
+package com.knb.repository;
+
+/**
+ * RowHandler receives rows one at a time from a streaming query
+ * Lets callers process large tables without loading them into a list
+ */
+@FunctionalInterface
+public interface RowHandler<T> {
+    /**
+     * Handle a single mapped row
+     * @param row The current row
+     * @throws Exception to abort the scan; resources are still released
+     */
+    void handle(T row) throws Exception;
+}
@@ -0,0 +1,102 @@
+package com.knb.repository;
+
+import com.knb.model.BatchResult;
+import com.knb.model.IdempotencyRecord;
+import com.knb.model.LedgerOp;
+import com.knb.model.MultiTransferResult;
+import com.knb.model.StatementPage;
+import com.knb.model.Transaction;
+import com.knb.model.TransferLeg;
+import com.knb.model.TransferResult;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * TransactionRepository defines ledger operations
+ * Implemented by the Oracle-backed DatabaseManager and the in-memory engine
+ */
+public interface TransactionRepository {
+    /**
+     * Record one ledger row
+     * @param balanceAfter The account's balance once this row is applied, in paise
+     */
+    void addTransaction(int acno, String type, long amount, int fromAcno, int toAcno, String status, String remarks,
+                        long balanceAfter) throws Exception;
+
+    BatchResult addTransactions(Collection<Transaction> transactions) throws Exception;
+
+    /**
+     * Atomically debit one account, credit another and record both ledger rows
+     * The debit only happens if the committed balance covers the amount.
+     */
+    TransferResult transferFunds(int fromAcno, int toAcno, long amount) throws Exception;
+
+    /**
+     * Debit one account once and credit every PENDING leg, all in one transaction
+     * Each leg's status is updated with what happened to it.
+     */
+    MultiTransferResult transferMany(int fromAcno, List<TransferLeg> legs) throws Exception;
+
+    /**
+     * Apply queued deposits, debits and transfers together in one transaction
+     * Each operation is checked on its own; one that fails does not affect the others.
+     * @return One result per operation, in the same order
+     */
+    List<TransferResult> applyLedgerBatch(List<LedgerOp> ops) throws Exception;
+
+    /**
+     * Apply operations the ledger engine has already checked and journaled, without
+     * re-checking balances, and advance the journal's watermark to lastSeq in the same transaction
+     * Does nothing if the watermark is already at or past lastSeq, so a replay is harmless.
+     */
+    void applyJournaledOps(String journalId, long lastSeq, List<LedgerOp> ops) throws Exception;
+
+    /**
+     * Get the last journal sequence applied to the tables for a ledger journal, or 0
+     */
+    long getLedgerWatermark(String journalId) throws Exception;
+
+    List<Transaction> getTransactionsForAccount(int acno) throws Exception;
+
+    StatementPage getStatementPage(int acno, Timestamp from, Timestamp to, String type,
+                                   StatementPage.Cursor after, int pageSize) throws Exception;
+
+    /**
+     * Statement page over the hot and archived ledger together, for history past the hot window
+     */
+    StatementPage getFullStatementPage(int acno, Timestamp from, Timestamp to, String type,
+                                       StatementPage.Cursor after, int pageSize) throws Exception;
+
+    int getTransactionCount() throws Exception;
+
+    /**
+     * Balance of an account just before asOf, i.e. after every ledger row dated earlier
+     * Answered from the latest balance snapshot and the balance recorded on the last row,
+     * without summing the account's history.
+     */
+    long getBalanceAsOf(int acno, Timestamp asOf) throws Exception;
+
+    /**
+     * Record a new idempotency key as PENDING
+     * @return null if this call claimed the key or took over an abandoned PENDING claim,
+     *         otherwise the record already stored for it
+     */
+    IdempotencyRecord claimIdempotencyKey(String key, String operation, int acno, long amount) throws Exception;
+
+    /**
+     * Store the outcome of the request that claimed the key
+     */
+    void completeIdempotencyKey(String key, boolean succeeded) throws Exception;
+
+    /**
+     * Forget a PENDING key whose request failed with an error, so it can be retried
+     */
+    void releaseIdempotencyKey(String key) throws Exception;
+
+    /**
+     * Keep a PENDING key whose request may or may not have moved money from being reused or taken over
+     */
+    void markIdempotencyKeyUnknown(String key) throws Exception;
+}
@@ -0,0 +1,39 @@
+package com.knb.repository;
+
+import com.knb.model.User;
+
+import java.util.List;
+
+/**
+ * UserRepository defines storage operations for system users
+ * Implemented by the Oracle-backed DatabaseManager and the in-memory engine
+ */
+public interface UserRepository {
+    User getUserByCredentials(String username, String password) throws Exception;
+
+    User getUserById(int id) throws Exception;
+
+    List<User> getAllUsers() throws Exception;
+
+    void forEachUser(RowHandler<User> handler) throws Exception;
+
+    List<User> getUsersByRole(String role) throws Exception;
+
+    List<User> getPendingUsers() throws Exception;
+
+    List<User> getTopCustomers() throws Exception;
+
+    void addUser(String username, String password, String name, String email, String mobile, String role) throws Exception;
+
+    void updateUser(int userId, String name, String email, String mobile, String status) throws Exception;
+
+    void updateUserRole(int userId, String role) throws Exception;
+
+    void updateUserStatus(int userId, String status) throws Exception;
+
+    void setUserPassword(int userId, String password) throws Exception;
+
+    void deleteUser(int userId) throws Exception;
+
+    int getUserCount() throws Exception;
+}
@@ -0,0 +1,135 @@
+package com.knb.service;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AccountLocks serialises in-process work on the same account with a fixed set of striped locks
+ * Pairs are always locked in stripe order, so two transfers in opposite
+ * directions cannot deadlock. Memory stays bounded however many accounts exist.
+ */
+public class AccountLocks {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    // Metrics; LongAdder so counting does not itself become a shared hot spot
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * @param stripeCount Number of locks, rounded up to a power of two
+     */
+    public AccountLocks(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(2, stripeCount) - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Stripes scaled to the machine so unrelated accounts rarely share a lock
+     */
+    public static AccountLocks forAvailableProcessors() {
+        return new AccountLocks(Runtime.getRuntime().availableProcessors() * 256);
+    }
+
+    /**
+     * Lock one account; release with the returned handle
+     */
+    public Held lock(int acno) {
+        ReentrantLock lock = stripes[stripe(acno)];
+        acquire(lock);
+        return new Held(lock);
+    }
+
+    /**
+     * Lock two accounts in canonical stripe order; release with the returned handle
+     */
+    public Held lock(int acnoA, int acnoB) {
+        int a = stripe(acnoA);
+        int b = stripe(acnoB);
+        if (a == b) {
+            return lock(acnoA);
+        }
+        ReentrantLock first = stripes[Math.min(a, b)];
+        ReentrantLock second = stripes[Math.max(a, b)];
+        acquire(first);
+        acquire(second);
+        return new Held(first, second);
+    }
+
+    /**
+     * Lock any number of accounts in canonical stripe order; release with the returned handle
+     */
+    public Held lockAll(int... acnos) {
+        int[] indexes = new int[acnos.length];
+        for (int i = 0; i < acnos.length; i++) {
+            indexes[i] = stripe(acnos[i]);
+        }
+        int[] unique = Arrays.stream(indexes).sorted().distinct().toArray();
+        ReentrantLock[] locks = new ReentrantLock[unique.length];
+        for (int i = 0; i < unique.length; i++) {
+            locks[i] = stripes[unique[i]];
+            acquire(locks[i]);
+        }
+        return new Held(locks);
+    }
+
+    private void acquire(ReentrantLock lock) {
+        acquisitions.increment();
+        if (lock.tryLock()) {
+            return;
+        }
+        contended.increment();
+        long start = System.nanoTime();
+        lock.lock();
+        waitNanos.add(System.nanoTime() - start);
+    }
+
+    private int stripe(int acno) {
+        int h = acno * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Locks taken by one lock() call, released in reverse order by release()
+     */
+    public static class Held {
+        private final ReentrantLock[] locks;
+
+        private Held(ReentrantLock... locks) {
+            this.locks = locks;
+        }
+
+        public void release() {
+            for (int i = locks.length - 1; i >= 0; i--) {
+                locks[i].unlock();
+            }
+        }
+    }
+
+    // ==================== METRICS ====================
+
+    public int getStripeCount() { return stripes.length; }
+    public long getAcquisitions() { return acquisitions.sum(); }
+    public long getContended() { return contended.sum(); }
+    public long getWaitMillis() { return waitNanos.sum() / 1_000_000; }
+
+    /**
+     * Fraction of acquisitions that had to wait for another thread
+     */
+    public double getContentionRate() {
+        long total = getAcquisitions();
+        return total == 0 ? 0 : (double) getContended() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AccountLocks[stripes=%d, acquisitions=%d, contended=%d (%.2f%%), waited=%d ms]",
+                getStripeCount(), getAcquisitions(), getContended(), getContentionRate() * 100, getWaitMillis());
+    }
+}
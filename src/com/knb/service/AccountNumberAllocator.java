@@ -0,0 +1,65 @@
+package com.knb.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * AccountNumberAllocator hands out account numbers from blocks reserved on acno_seq_KNBtbl
+ * The sequence steps by BLOCK_SIZE, so each NEXTVAL reserves the numbers
+ * [value, value + BLOCK_SIZE) for this process and the rest are served from memory.
+ * Numbers left in a block when the process exits are skipped, never reused.
+ */
+public class AccountNumberAllocator {
+    /** Must match INCREMENT BY on acno_seq_KNBtbl */
+    public static final int BLOCK_SIZE = 50;
+
+    private int next;
+    private int limit;
+
+    // Metrics
+    private long allocated;
+    private long blocksReserved;
+
+    /**
+     * Next free account number, reserving a new block on the given connection when needed
+     */
+    public synchronized int next(Connection conn) throws SQLException {
+        if (next >= limit) {
+            reserveBlock(conn);
+        }
+        allocated++;
+        return next++;
+    }
+
+    /**
+     * Allocate count account numbers at once; blocks are reserved as they run out
+     */
+    public synchronized int[] next(Connection conn, int count) throws SQLException {
+        int[] numbers = new int[count];
+        for (int i = 0; i < count; i++) {
+            numbers[i] = next(conn);
+        }
+        return numbers;
+    }
+
+    private void reserveBlock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT acno_seq_KNBtbl.NEXTVAL FROM dual");
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            next = rs.getInt(1);
+            limit = next + BLOCK_SIZE;
+            blocksReserved++;
+        }
+    }
+
+    public synchronized long getAllocated() { return allocated; }
+    public synchronized long getBlocksReserved() { return blocksReserved; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("AccountNumberAllocator[allocated=%d, blocks=%d, remaining=%d]",
+                allocated, blocksReserved, Math.max(0, limit - next));
+    }
+}
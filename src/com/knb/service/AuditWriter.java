@@ -0,0 +1,301 @@
+package com.knb.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AuditWriter takes audit entries off the caller's thread
+ * Entries are queued and written to audit_log_KNBtbl in JDBC batches,
+ * flushed when a batch fills up or the oldest entry has waited long enough
+ *
+ * A batch that fails is retried with backoff. If the database still refuses it,
+ * the entries are appended to a local spill file (one tab-separated line each:
+ * time, user, action, details) to be loaded later, and only entries that could
+ * not be spilled either are counted as failed.
+ */
+public class AuditWriter {
+
+    /**
+     * What submit() does when the queue is full
+     */
+    public enum Policy {
+        /** Wait for space in the queue */
+        BLOCK,
+        /** Write the entry synchronously on the caller's thread */
+        CALLER_RUNS,
+        /** Discard the entry and count it as dropped */
+        DROP
+    }
+
+    private static final String INSERT_SQL =
+            "INSERT INTO audit_log_KNBtbl(user_id, action, details, action_time) VALUES (?, ?, ?, ?)";
+    private static final long[] RETRY_BACKOFF_MS = {100, 500, 2_000};
+
+    private final DatabaseManager db;
+    private final BlockingQueue<Record> queue;
+    private final int batchSize;
+    private final long maxWaitMillis;
+    private final Policy policy;
+    private final Path spillPath;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    // Metrics
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong callerRuns = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private static class Record {
+        final int userId;
+        final String action;
+        final String details;
+        final Timestamp time;
+
+        Record(int userId, String action, String details) {
+            this.userId = userId;
+            this.action = action;
+            this.details = details;
+            this.time = new Timestamp(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Create the writer and start its background thread
+     * @param capacity Maximum queued entries
+     * @param batchSize Entries written per batch
+     * @param maxWaitMillis Longest an entry waits before its batch is flushed
+     * @param policy Backpressure policy when the queue is full
+     * @param spillPath File that takes entries the database would not accept
+     */
+    public AuditWriter(DatabaseManager db, int capacity, int batchSize, long maxWaitMillis, Policy policy,
+                       Path spillPath) {
+        this.db = db;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.policy = policy;
+        this.spillPath = spillPath;
+        this.worker = new Thread(this::run, "knb-audit-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queue an audit entry; the action time is taken now, not when it is written
+     */
+    public void submit(int userId, String action, String details) throws Exception {
+        Record record = new Record(userId, action, details);
+        submitted.incrementAndGet();
+        if (running && queue.offer(record)) {
+            return;
+        }
+        if (running && policy == Policy.BLOCK) {
+            queue.put(record);
+        } else if (policy == Policy.DROP && running) {
+            dropped.incrementAndGet();
+        } else {
+            // CALLER_RUNS, or the writer is already shutting down
+            callerRuns.incrementAndGet();
+            List<Record> single = new ArrayList<>(1);
+            single.add(record);
+            if (!write(single)) {
+                throw new Exception("Audit entry could not be written or spilled: " + action);
+            }
+        }
+    }
+
+    /**
+     * Wait until everything queued so far has been written
+     * @return true if the queue drained within the timeout
+     */
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this) {
+            while (getPending() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stop accepting queued entries, write everything still pending and stop the thread
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        try {
+            worker.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything the worker did not get to is written here
+        List<Record> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            write(rest);
+        }
+    }
+
+    private void run() {
+        List<Record> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Record first = queue.poll(maxWaitMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    Record next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Write a batch, retrying with backoff, and spill it to the local file if the database keeps failing
+     * @return false if the entries were neither written nor spilled
+     */
+    private boolean write(List<Record> records) {
+        try {
+            Exception last = null;
+            for (int attempt = 0; attempt <= RETRY_BACKOFF_MS.length; attempt++) {
+                if (attempt > 0) {
+                    retries.incrementAndGet();
+                    try {
+                        Thread.sleep(RETRY_BACKOFF_MS[attempt - 1]);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                try {
+                    insert(records);
+                    written.addAndGet(records.size());
+                    batches.incrementAndGet();
+                    return true;
+                } catch (Exception e) {
+                    last = e;
+                }
+            }
+            String reason = last == null ? "interrupted" : last.getMessage();
+            try {
+                spill(records);
+                spilled.addAndGet(records.size());
+                System.err.println("CRITICAL: Failed to write " + records.size() + " audit entries (" + reason
+                        + "); spilled to " + spillPath);
+                return true;
+            } catch (IOException e) {
+                failed.addAndGet(records.size());
+                System.err.println("CRITICAL: Failed to write " + records.size() + " audit entries (" + reason
+                        + ") or spill them: " + e.getMessage());
+                for (Record r : records) {
+                    System.err.println("  AUDIT " + r.time + " user=" + r.userId + " " + r.action + ": " + r.details);
+                }
+                return false;
+            }
+        } finally {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void insert(List<Record> records) throws Exception {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            conn.setAutoCommit(false);
+            for (Record r : records) {
+                ps.setInt(1, r.userId);
+                ps.setString(2, r.action);
+                ps.setString(3, r.details);
+                ps.setTimestamp(4, r.time);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+        }
+    }
+
+    /**
+     * Append entries to the spill file and force them to disk
+     */
+    private synchronized void spill(List<Record> records) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(spillPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC)) {
+            for (Record r : records) {
+                out.write(r.time + "\t" + r.userId + "\t" + escape(r.action) + "\t" + escape(r.details));
+                out.newLine();
+            }
+        }
+    }
+
+    private static String escape(String s) {
+        return s == null ? "" : s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    // ==================== METRICS ====================
+
+    public long getSubmitted() { return submitted.get(); }
+    public long getWritten() { return written.get(); }
+    public long getDropped() { return dropped.get(); }
+    public long getCallerRuns() { return callerRuns.get(); }
+    public long getBatches() { return batches.get(); }
+    public long getRetries() { return retries.get(); }
+    public long getSpilled() { return spilled.get(); }
+    public long getFailed() { return failed.get(); }
+    public Path getSpillPath() { return spillPath; }
+    public int getQueueDepth() { return queue.size(); }
+
+    /**
+     * Entries accepted but not yet written or given up on
+     */
+    public long getPending() {
+        return submitted.get() - written.get() - dropped.get() - spilled.get() - failed.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AuditWriter[%s: queued=%d, submitted=%d, written=%d, batches=%d, dropped=%d, callerRuns=%d, " +
+                        "retries=%d, spilled=%d, failed=%d]",
+                policy, getQueueDepth(), getSubmitted(), getWritten(), getBatches(), getDropped(), getCallerRuns(),
+                getRetries(), getSpilled(), getFailed());
+    }
+}
@@ -1,18 +1,27 @@
 package com.knb.service;
 
 import com.knb.model.User;
+import com.knb.repository.BankStorage;
 
 /**
  * AuthenticationService handles user authentication and registration
  * Provides secure login and user management functionality
  */
 public class AuthenticationService {
-    private final DatabaseManager db;
+    private final BankStorage db;
 
-    public AuthenticationService(DatabaseManager db) {
+    public AuthenticationService(BankStorage db) {
         this.db = db;
     }
 
+    /**
+     * Get the storage backend this service authenticates against
+     * Dashboards opened after login share it
+     */
+    public BankStorage getStorage() {
+        return db;
+    }
+
     /**
      * Authenticate user with username and password
      * @param username User's login username
@@ -0,0 +1,74 @@
+package com.knb.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+
+/**
+ * BalanceSnapshotter records each account's balance as of a cutoff in balance_snapshots_KNBtbl
+ * Run daily for midnight, it gives as-of-date queries a starting point close to the
+ * date asked for, so they never reach back through older partitions or the archive.
+ *
+ * The balance is worked back from the live balance by the rows dated at or after
+ * the cutoff, so only the newest partition is read. Accounts with no ledger rows
+ * since their last snapshot are skipped, as that snapshot still holds. A rerun for
+ * the same cutoff inserts nothing.
+ */
+public class BalanceSnapshotter {
+    private static final String SNAPSHOT_SQL =
+            "INSERT INTO balance_snapshots_KNBtbl (acno, snapshot_at, balance) " +
+            "SELECT a.acno, ?, a.balance - NVL(r.delta, 0) FROM accounts_KNBtbl a " +
+            "LEFT JOIN (SELECT acno, SUM(CASE WHEN to_acno = acno THEN amount ELSE -amount END) delta " +
+            "           FROM transactions_KNBtbl WHERE date_time >= ? AND status = 'SUCCESS' GROUP BY acno) r " +
+            "  ON r.acno = a.acno " +
+            "WHERE NOT EXISTS (SELECT 1 FROM balance_snapshots_KNBtbl s WHERE s.acno = a.acno AND s.snapshot_at >= ?) " +
+            "  AND (NOT EXISTS (SELECT 1 FROM balance_snapshots_KNBtbl s WHERE s.acno = a.acno) " +
+            "       OR EXISTS (SELECT 1 FROM transactions_KNBtbl t WHERE t.acno = a.acno AND t.date_time < ? " +
+            "                  AND t.date_time >= (SELECT MAX(s.snapshot_at) FROM balance_snapshots_KNBtbl s WHERE s.acno = a.acno)))";
+
+    private final DatabaseManager db;
+
+    public BalanceSnapshotter(DatabaseManager db) {
+        this.db = db;
+    }
+
+    /**
+     * Midnight at the start of today, the usual cutoff for the nightly run
+     */
+    public static Timestamp startOfToday() {
+        return Timestamp.valueOf(LocalDate.now().atStartOfDay());
+    }
+
+    /**
+     * Snapshot every account that changed since its last snapshot
+     * The cutoff must be older than the longest-running money transaction, so no row
+     * dated before it can still be uncommitted; the statement reads one consistent view.
+     * @return Number of snapshots written
+     */
+    public int takeSnapshots(Timestamp cutoff) throws Exception {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SNAPSHOT_SQL)) {
+            for (int i = 1; i <= 4; i++) {
+                ps.setTimestamp(i, cutoff);
+            }
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Take today's snapshots once, e.g. from a nightly scheduler shortly after midnight
+     */
+    public static void main(String[] args) {
+        try {
+            Timestamp cutoff = startOfToday();
+            int rows = new BalanceSnapshotter(new DatabaseManager()).takeSnapshots(cutoff);
+            System.out.println("Balance snapshots as of " + cutoff + ": " + rows + " accounts");
+        } catch (Exception e) {
+            System.err.println("Balance snapshot failed: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            DatabaseManager.shutdown();
+        }
+    }
+}
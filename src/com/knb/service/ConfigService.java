@@ -0,0 +1,213 @@
+package com.knb.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConfigService serves config_KNBtbl from an in-memory snapshot
+ * Readers never touch the database or block; a background refresh reloads
+ * the snapshot only when the table's version stamp has changed
+ */
+public class ConfigService {
+    private static final String UPSERT_SQL =
+            "MERGE INTO config_KNBtbl c USING (SELECT ? AS k, ? AS v FROM dual) s ON (c.key = s.k) " +
+            "WHEN MATCHED THEN UPDATE SET c.value = s.v, c.version = config_version_seq_KNBtbl.NEXTVAL, c.updated_at = CURRENT_TIMESTAMP " +
+            "WHEN NOT MATCHED THEN INSERT (key, value, version) VALUES (s.k, s.v, config_version_seq_KNBtbl.NEXTVAL)";
+
+    private final DatabaseManager db;
+    private final ScheduledExecutorService refresher;
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), null);
+
+    /**
+     * Immutable view of every config key at one version
+     * The stamp combines the highest row version with the row count so deletes are noticed too.
+     */
+    private static class Snapshot {
+        final Map<String, String> values;
+        final String stamp;
+
+        Snapshot(Map<String, String> values, String stamp) {
+            this.values = values;
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * Load the snapshot and start refreshing it in the background
+     * @param refreshIntervalMillis How often the version stamp is checked
+     */
+    public ConfigService(DatabaseManager db, long refreshIntervalMillis) {
+        this.db = db;
+        try {
+            reload();
+        } catch (Exception e) {
+            System.err.println("Could not load configuration, using defaults: " + e.getMessage());
+        }
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "knb-config-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (Exception e) {
+                System.err.println("Configuration refresh failed: " + e.getMessage());
+            }
+        }, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // ==================== READS ====================
+
+    public String getString(String key) {
+        return snapshot.values.get(key);
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = snapshot.values.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = snapshot.values.get(key);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = snapshot.values.get(key);
+        if (value == null) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = snapshot.values.get(key);
+        if (value == null) return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = snapshot.values.get(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Get every key in the current snapshot
+     */
+    public Map<String, String> getAll() {
+        return snapshot.values;
+    }
+
+    /**
+     * Version stamp of the current snapshot, null if it was never loaded
+     */
+    public String getVersion() {
+        return snapshot.stamp;
+    }
+
+    // ==================== WRITES ====================
+
+    /**
+     * Insert or update a key with a single MERGE
+     */
+    public void set(String key, String value) throws Exception {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+            ps.setString(1, key);
+            ps.setString(2, value);
+            ps.executeUpdate();
+        }
+        applyLocal(key, value);
+    }
+
+    /**
+     * Delete a key
+     */
+    public void delete(String key) throws Exception {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM config_KNBtbl WHERE key=?")) {
+            ps.setString(1, key);
+            ps.executeUpdate();
+        }
+        applyLocal(key, null);
+    }
+
+    // ==================== REFRESH ====================
+
+    /**
+     * Reload the snapshot if the table has changed since it was taken
+     * @return true if a new snapshot was installed
+     */
+    public boolean refresh() throws Exception {
+        String current;
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT NVL(MAX(version), 0), COUNT(*) FROM config_KNBtbl");
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            current = rs.getLong(1) + ":" + rs.getLong(2);
+        }
+        if (current.equals(snapshot.stamp)) {
+            return false;
+        }
+        reload();
+        return true;
+    }
+
+    /**
+     * Load every key into a fresh snapshot and publish it
+     */
+    public void reload() throws Exception {
+        Map<String, String> values = new HashMap<>();
+        long maxVersion = 0;
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT key, value, version FROM config_KNBtbl");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                values.put(rs.getString(1), rs.getString(2));
+                maxVersion = Math.max(maxVersion, rs.getLong(3));
+            }
+        }
+        snapshot = new Snapshot(Collections.unmodifiableMap(values), maxVersion + ":" + values.size());
+    }
+
+    /**
+     * Stop the background refresh
+     */
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Publish this process's own write immediately (copy-on-write)
+     * The stamp is kept, so the next refresh still picks up the authoritative version.
+     */
+    private synchronized void applyLocal(String key, String value) {
+        Map<String, String> values = new HashMap<>(snapshot.values);
+        if (value == null) {
+            values.remove(key);
+        } else {
+            values.put(key, value);
+        }
+        snapshot = new Snapshot(Collections.unmodifiableMap(values), snapshot.stamp);
+    }
+}
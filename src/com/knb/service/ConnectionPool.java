@@ -0,0 +1,294 @@
+package com.knb.service;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConnectionPool keeps a bounded set of physical JDBC connections open
+ * Hands out wrapped connections whose close() returns them to the pool
+ */
+public class ConnectionPool {
+    private final String url;
+    private final String user;
+    private final String pass;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final int validationTimeoutSeconds;
+
+    private final LinkedBlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final ScheduledExecutorService evictor;
+    private volatile boolean shutdown;
+
+    // Metrics
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    /**
+     * Create a pool and open the minimum number of connections
+     * @param url JDBC URL
+     * @param user Database user
+     * @param pass Database password
+     * @param minSize Connections kept open even when idle
+     * @param maxSize Upper bound on open connections
+     * @param idleTimeoutMillis Idle time after which connections above minSize are closed
+     * @param borrowTimeoutMillis Maximum time a caller waits for a free connection
+     */
+    public ConnectionPool(String url, String user, String pass, int minSize, int maxSize,
+                          long idleTimeoutMillis, long borrowTimeoutMillis) {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.pass = pass;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validationTimeoutSeconds = 2;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "knb-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+
+        // Warm up; a failure here is not fatal, connections are retried on borrow
+        try {
+            for (int i = 0; i < minSize; i++) {
+                idle.offerLast(new PooledEntry(openPhysical()));
+            }
+        } catch (SQLException e) {
+            System.err.println("Connection pool warm-up failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Borrow a connection, waiting up to the borrow timeout
+     * @return Connection whose close() returns it to the pool
+     * @throws SQLException if the pool is exhausted or the database is unreachable
+     */
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool is shut down");
+        }
+        long start = System.nanoTime();
+        if (!permits.tryAcquire()) {
+            waitCount.incrementAndGet();
+            try {
+                if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    timeoutCount.incrementAndGet();
+                    throw new SQLException("Timed out after " + borrowTimeoutMillis
+                            + " ms waiting for a database connection (" + getActiveConnections() + " in use)");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+        }
+        totalWaitNanos.addAndGet(System.nanoTime() - start);
+
+        try {
+            PooledEntry entry;
+            while ((entry = idle.pollFirst()) != null) {
+                if (validate(entry.physical)) {
+                    break;
+                }
+                validationFailures.incrementAndGet();
+                destroy(entry.physical);
+            }
+            if (entry == null) {
+                entry = new PooledEntry(openPhysical());
+            }
+            borrowCount.incrementAndGet();
+            return wrap(entry);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Close all idle connections and stop the evictor; borrowed connections close on return
+     */
+    public void shutdown() {
+        shutdown = true;
+        evictor.shutdownNow();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            destroy(entry.physical);
+        }
+    }
+
+    // ==================== METRICS ====================
+
+    public int getTotalConnections() { return totalConnections.get(); }
+    public int getIdleConnections() { return idle.size(); }
+    public int getActiveConnections() { return maxSize - permits.availablePermits(); }
+    public int getMaxSize() { return maxSize; }
+    public int getMinSize() { return minSize; }
+    public long getBorrowCount() { return borrowCount.get(); }
+    public long getWaitCount() { return waitCount.get(); }
+    public long getTimeoutCount() { return timeoutCount.get(); }
+    public long getCreatedCount() { return createdCount.get(); }
+    public long getDestroyedCount() { return destroyedCount.get(); }
+    public long getValidationFailures() { return validationFailures.get(); }
+
+    /**
+     * Average time spent acquiring a connection, in milliseconds
+     */
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / borrows;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Pool[total=%d, active=%d, idle=%d, max=%d, borrows=%d, waits=%d, timeouts=%d, created=%d, destroyed=%d, avgWait=%.2fms]",
+                getTotalConnections(), getActiveConnections(), getIdleConnections(), maxSize,
+                getBorrowCount(), getWaitCount(), getTimeoutCount(), getCreatedCount(), getDestroyedCount(),
+                getAverageWaitMillis());
+    }
+
+    // ==================== INTERNALS ====================
+
+    private Connection openPhysical() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, user, pass);
+        totalConnections.incrementAndGet();
+        createdCount.incrementAndGet();
+        return conn;
+    }
+
+    private boolean validate(Connection conn) {
+        try {
+            return !conn.isClosed() && conn.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void destroy(Connection conn) {
+        try { conn.close(); } catch (Exception e) {}
+        totalConnections.decrementAndGet();
+        destroyedCount.incrementAndGet();
+    }
+
+    /**
+     * Return a physical connection to the idle set, resetting any state a caller changed
+     */
+    private void release(PooledEntry entry) {
+        try {
+            Connection conn = entry.physical;
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            if (shutdown || conn.isClosed()) {
+                destroy(conn);
+            } else {
+                entry.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(entry);
+            }
+        } catch (SQLException e) {
+            destroy(entry.physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Close connections above the minimum that have sat idle past the idle timeout
+     */
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        while (totalConnections.get() > minSize) {
+            PooledEntry oldest = idle.peekLast();
+            if (oldest == null || oldest.lastUsed > cutoff || !idle.removeLastOccurrence(oldest)) {
+                break;
+            }
+            destroy(oldest.physical);
+        }
+    }
+
+    private Connection wrap(PooledEntry entry) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new PooledHandler(entry));
+    }
+
+    private static class PooledEntry {
+        final Connection physical;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        PooledEntry(Connection physical) {
+            this.physical = physical;
+        }
+    }
+
+    /**
+     * Routes calls to the physical connection until the borrower closes it
+     */
+    private class PooledHandler implements InvocationHandler {
+        private final PooledEntry entry;
+        private boolean closed;
+
+        PooledHandler(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + entry.physical + "]";
+                default:
+                    if (closed) {
+                        throw new SQLException("Connection has been returned to the pool");
+                    }
+                    try {
+                        return method.invoke(entry.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -1,26 +1,141 @@
 package com.knb.service;
 
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import com.knb.model.*;
+import com.knb.repository.BankStorage;
+import com.knb.repository.RowHandler;
 
 /**
  * DatabaseManager handles all database operations
- * Provides comprehensive data access layer for the banking system
+ * Provides the Oracle-backed implementation of the BankStorage repositories
  */
-public class DatabaseManager {
+public class DatabaseManager implements BankStorage {
     private static final String DB_URL = "jdbc:oracle:thin:@localhost:1521:XE";
     private static final String USER = "Prak";
     private static final String PASS = "prak05";
 
+    // Pool sizing, shared by every DatabaseManager instance
+    private static final int POOL_MIN_SIZE = 2;
+    private static final int POOL_MAX_SIZE = 10;
+    private static final long POOL_IDLE_TIMEOUT_MS = 5 * 60 * 1000L;
+    private static final long POOL_BORROW_TIMEOUT_MS = 10 * 1000L;
+
+    private static final long CONFIG_REFRESH_MS = 30 * 1000L;
+
+    // Async audit pipeline; the backpressure policy can be set with audit.backpressure
+    private static final int AUDIT_QUEUE_CAPACITY = 10_000;
+    private static final int AUDIT_BATCH_SIZE = 100;
+    private static final long AUDIT_MAX_WAIT_MS = 200;
+    private static final long AUDIT_SHUTDOWN_TIMEOUT_MS = 5 * 1000L;
+    private static final String DEFAULT_AUDIT_SPILL_PATH = "knb-audit-spill.log";
+
+    private static volatile ConnectionPool pool;
+    private static volatile ConfigService config;
+    private static volatile AuditWriter auditWriter;
+
+    /**
+     * Get the shared connection pool, creating it on first use
+     * Lock-free once created, so background writers flushing during shutdown never wait on it
+     */
+    public static ConnectionPool getPool() throws Exception {
+        ConnectionPool p = pool;
+        if (p != null) {
+            return p;
+        }
+        synchronized (DatabaseManager.class) {
+            if (pool == null) {
+                Class.forName("oracle.jdbc.driver.OracleDriver");
+                pool = new ConnectionPool(DB_URL, USER, PASS, POOL_MIN_SIZE, POOL_MAX_SIZE,
+                        POOL_IDLE_TIMEOUT_MS, POOL_BORROW_TIMEOUT_MS);
+                Runtime.getRuntime().addShutdownHook(new Thread(DatabaseManager::shutdown, "knb-db-shutdown"));
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Release shared resources in dependency order: queued ledger operations and
+     * pending audit entries are flushed while the pool is still open, then the pool is closed
+     * The components are read under the class lock but stopped outside it, since their
+     * worker threads need the pool, config and audit writer to finish what is queued.
+     */
+    public static void shutdown() {
+        AuditWriter audit;
+        ConfigService cfg;
+        ConnectionPool p;
+        synchronized (DatabaseManager.class) {
+            audit = auditWriter;
+            cfg = config;
+            p = pool;
+        }
+        TransactionManager.shutdownPipeline();
+        if (audit != null) {
+            audit.shutdown(AUDIT_SHUTDOWN_TIMEOUT_MS);
+        }
+        if (cfg != null) {
+            cfg.shutdown();
+        }
+        if (p != null) {
+            p.shutdown();
+        }
+    }
+
     /**
-     * Get database connection
+     * Get database connection from the pool
+     * Closing the returned connection hands it back to the pool
      * @return Connection object
      * @throws Exception if connection fails
      */
     public Connection getConnection() throws Exception {
-        Class.forName("oracle.jdbc.driver.OracleDriver");
-        return DriverManager.getConnection(DB_URL, USER, PASS);
+        return getPool().getConnection();
+    }
+
+    // ==================== LOOKUP CACHES ====================
+    // Shared by every DatabaseManager instance; writes through this class invalidate
+    // the affected keys, and the TTL bounds staleness from writes made elsewhere.
+
+    private static final int CACHE_MAX_SIZE = 10_000;
+    private static final long CACHE_TTL_MS = 30 * 1000L;
+
+    private static final ReadThroughCache<Integer, User> userCache =
+            new ReadThroughCache<>("users", CACHE_MAX_SIZE, CACHE_TTL_MS);
+    private static final ReadThroughCache<Integer, Account> accountCache =
+            new ReadThroughCache<>("accounts", CACHE_MAX_SIZE, CACHE_TTL_MS);
+    private static final ReadThroughCache<Integer, Integer> accountNoByUserCache =
+            new ReadThroughCache<>("accountByUser", CACHE_MAX_SIZE, CACHE_TTL_MS);
+
+    /**
+     * Get hit/miss/eviction statistics for the lookup caches
+     */
+    public static String getCacheStats() {
+        return userCache + "\n" + accountCache + "\n" + accountNoByUserCache;
+    }
+
+    /**
+     * Drop all cached lookups, e.g. after direct SQL changes
+     */
+    public static void clearCaches() {
+        userCache.clear();
+        accountCache.clear();
+        accountNoByUserCache.clear();
+    }
+
+    // Cached models are mutable, so callers always get their own copy
+    private static User copyOf(User u) {
+        return new User(u.getUserId(), u.getUsername(), u.getPassword(), u.getName(), u.getEmail(),
+                u.getMobile(), u.getRole(), u.getStatus());
+    }
+
+    private static Account copyOf(Account a) {
+        return new Account(a.getAcno(), a.getUserId(), a.getName(), a.getBalance(), a.getMobileNumber(),
+                a.getAccountType(), a.getAccountStatus());
     }
 
     /**
@@ -32,6 +147,85 @@ public class DatabaseManager {
         try { if (conn != null) conn.close(); } catch (Exception e) {}
     }
 
+    // ==================== COLUMN PROJECTIONS ====================
+    // Mappers read columns by position; keep each list in step with its mapper.
+
+    private static final String USER_COLUMNS = "user_id, username, name, email, mobile, role, status";
+    private static final String USER_COLUMNS_U = "u.user_id, u.username, u.name, u.email, u.mobile, u.role, u.status";
+    private static final String ACCOUNT_COLUMNS = "acno, user_id, name, balance, mobile_number, account_type, account_status";
+    private static final String TRANSACTION_COLUMNS = "tx_id, acno, from_acno, to_acno, type, amount, date_time, status, remarks, balance_after";
+    private static final String AUDIT_COLUMNS = "audit_id, user_id, action_time, action, details";
+
+    // ==================== STREAMING ====================
+
+    /**
+     * Rows fetched per round trip by the streaming queries (the Oracle driver default is 10)
+     */
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    /**
+     * Maps the current ResultSet row to a model object
+     */
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Run a query and push each mapped row to the handler, closing everything afterwards
+     * @param params Values bound to the query's placeholders, in order
+     */
+    private <T> void forEachRow(String sql, int fetchSize, RowMapper<T> mapper, RowHandler<T> handler,
+                                Object... params) throws Exception {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(mapper.map(rs));
+                }
+            }
+        }
+    }
+
+    /**
+     * Run a query and expose its rows as a lazy Stream whose close() releases the connection
+     */
+    private <T> Stream<T> streamRows(String sql, int fetchSize, RowMapper<T> mapper) throws Exception {
+        Connection conn = getConnection();
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            rs = ps.executeQuery();
+        } catch (Exception e) {
+            closeResources(conn, ps, rs);
+            throw e;
+        }
+
+        final Connection c = conn;
+        final PreparedStatement st = ps;
+        final ResultSet r = rs;
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!r.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(r));
+                    return true;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Error reading streamed rows", e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> closeResources(c, st, r));
+    }
+
     // ==================== USER OPERATIONS ====================
 
     /**
@@ -39,7 +233,7 @@ public class DatabaseManager {
      */
     public User getUserByCredentials(String username, String password) throws Exception {
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM users_KNBtbl WHERE username=? AND password=?")) {
+             PreparedStatement ps = conn.prepareStatement("SELECT " + USER_COLUMNS + " FROM users_KNBtbl WHERE username=? AND password=?")) {
             ps.setString(1, username);
             ps.setString(2, password);
             ResultSet rs = ps.executeQuery();
@@ -49,11 +243,16 @@ public class DatabaseManager {
     }
 
     /**
-     * Get user by ID
+     * Get user by ID, served from the user cache when possible
      */
     public User getUserById(int id) throws Exception {
+        User user = userCache.get(id, this::queryUserById);
+        return user == null ? null : copyOf(user);
+    }
+
+    private User queryUserById(int id) throws Exception {
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM users_KNBtbl WHERE user_id=?")) {
+             PreparedStatement ps = conn.prepareStatement("SELECT " + USER_COLUMNS + " FROM users_KNBtbl WHERE user_id=?")) {
             ps.setInt(1, id);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) return mapUser(rs);
@@ -67,19 +266,41 @@ public class DatabaseManager {
     public List<User> getAllUsers() throws Exception {
         List<User> list = new ArrayList<>();
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM users_KNBtbl")) {
+             PreparedStatement ps = conn.prepareStatement("SELECT " + USER_COLUMNS + " FROM users_KNBtbl")) {
             ResultSet rs = ps.executeQuery();
             while (rs.next()) list.add(mapUser(rs));
             return list;
         }
     }
 
+    /**
+     * Stream all users through a handler without materializing them
+     */
+    public void forEachUser(RowHandler<User> handler) throws Exception {
+        forEachUser(DEFAULT_FETCH_SIZE, handler);
+    }
+
+    /**
+     * Stream all users through a handler with the given JDBC fetch size
+     */
+    public void forEachUser(int fetchSize, RowHandler<User> handler) throws Exception {
+        forEachRow("SELECT " + USER_COLUMNS + " FROM users_KNBtbl", fetchSize, this::mapUser, handler);
+    }
+
+    /**
+     * Open a lazy stream over all users
+     * The stream holds a pooled connection and must be closed, e.g. with try-with-resources
+     */
+    public Stream<User> streamUsers(int fetchSize) throws Exception {
+        return streamRows("SELECT " + USER_COLUMNS + " FROM users_KNBtbl", fetchSize, this::mapUser);
+    }
+
     /**
      * Get users by role with active status
      */
     public List<User> getUsersByRole(String role) throws Exception {
         List<User> list = new ArrayList<>();
-        String sql = "SELECT * FROM users_KNBtbl WHERE role = ? AND status = 'ACTIVE' ORDER BY user_id";
+        String sql = "SELECT " + USER_COLUMNS + " FROM users_KNBtbl WHERE role = ? AND status = 'ACTIVE' ORDER BY user_id";
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, role);
@@ -123,6 +344,7 @@ public class DatabaseManager {
             ps.setInt(5, userId);
             ps.executeUpdate();
         }
+        userCache.invalidate(userId);
     }
 
     /**
@@ -134,6 +356,8 @@ public class DatabaseManager {
             ps.setInt(1, userId);
             ps.executeUpdate();
         }
+        userCache.invalidate(userId);
+        accountNoByUserCache.invalidate(userId);
     }
 
     /**
@@ -146,21 +370,24 @@ public class DatabaseManager {
             ps.setInt(2, userId);
             ps.executeUpdate();
         }
+        userCache.invalidate(userId);
     }
 
     /**
      * Map ResultSet to User object
+     * Reads by position, so the query must select USER_COLUMNS in that order.
+     * The password is never selected and is left null.
      */
     private User mapUser(ResultSet rs) throws SQLException {
         return new User(
-                rs.getInt("user_id"),
-                rs.getString("username"),
-                rs.getString("password"),
-                rs.getString("name"),
-                rs.getString("email"),
-                rs.getString("mobile"),
-                rs.getString("role"),
-                rs.getString("status")
+                rs.getInt(1),
+                rs.getString(2),
+                null,
+                rs.getString(3),
+                rs.getString(4),
+                rs.getString(5),
+                rs.getString(6),
+                rs.getString(7)
         );
     }
 
@@ -172,7 +399,7 @@ public class DatabaseManager {
     public List<Account> getAllAccounts() throws Exception {
         List<Account> ret = new ArrayList<>();
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM accounts_KNBtbl")) {
+             PreparedStatement ps = conn.prepareStatement("SELECT " + ACCOUNT_COLUMNS + " FROM accounts_KNBtbl")) {
             ResultSet rs = ps.executeQuery();
             while (rs.next()) ret.add(mapAccount(rs));
             return ret;
@@ -180,11 +407,43 @@ public class DatabaseManager {
     }
 
     /**
-     * Get account by user ID
+     * Stream all accounts through a handler without materializing them
+     */
+    public void forEachAccount(RowHandler<Account> handler) throws Exception {
+        forEachAccount(DEFAULT_FETCH_SIZE, handler);
+    }
+
+    /**
+     * Stream all accounts through a handler with the given JDBC fetch size
+     */
+    public void forEachAccount(int fetchSize, RowHandler<Account> handler) throws Exception {
+        forEachRow("SELECT " + ACCOUNT_COLUMNS + " FROM accounts_KNBtbl", fetchSize, this::mapAccount, handler);
+    }
+
+    /**
+     * Open a lazy stream over all accounts
+     * The stream holds a pooled connection and must be closed, e.g. with try-with-resources
+     */
+    public Stream<Account> streamAccounts(int fetchSize) throws Exception {
+        return streamRows("SELECT " + ACCOUNT_COLUMNS + " FROM accounts_KNBtbl", fetchSize, this::mapAccount);
+    }
+
+    /**
+     * Get account by user ID, served from the account caches when possible
      */
     public Account getAccountByUserId(int userId) throws Exception {
+        Account[] loaded = {null};
+        Integer acno = accountNoByUserCache.get(userId, id -> {
+            loaded[0] = queryAccountByUserId(id);
+            return loaded[0] == null ? null : loaded[0].getAcno();
+        });
+        if (acno == null) return null;
+        return loaded[0] != null ? loaded[0] : getAccount(acno);
+    }
+
+    private Account queryAccountByUserId(int userId) throws Exception {
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM accounts_KNBtbl WHERE user_id=?")) {
+             PreparedStatement ps = conn.prepareStatement("SELECT " + ACCOUNT_COLUMNS + " FROM accounts_KNBtbl WHERE user_id=?")) {
             ps.setInt(1, userId);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) return mapAccount(rs);
@@ -193,11 +452,16 @@ public class DatabaseManager {
     }
 
     /**
-     * Get account by account number
+     * Get account by account number, served from the account cache when possible
      */
     public Account getAccount(int acno) throws Exception {
+        Account account = accountCache.get(acno, this::queryAccount);
+        return account == null ? null : copyOf(account);
+    }
+
+    private Account queryAccount(int acno) throws Exception {
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM accounts_KNBtbl WHERE acno=?")) {
+             PreparedStatement ps = conn.prepareStatement("SELECT " + ACCOUNT_COLUMNS + " FROM accounts_KNBtbl WHERE acno=?")) {
             ps.setInt(1, acno);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) return mapAccount(rs);
@@ -205,52 +469,148 @@ public class DatabaseManager {
         }
     }
 
+    // ==================== ACCOUNT CREATION ====================
+    // Account numbers come from blocks reserved on acno_seq_KNBtbl, and the unique
+    // constraint on accounts_KNBtbl.user_id is the duplicate check, so creating an
+    // account is a single insert and bulk onboarding is a single batch.
+
+    // ORA-00001: unique constraint violated
+    private static final int UNIQUE_VIOLATION = 1;
+    private static final String DUPLICATE_ACCOUNT_MESSAGE = "This user already has a bank account linked.";
+    // Unique constraint on accounts_KNBtbl.user_id, named by migration 12
+    static final String ACCOUNT_USER_CONSTRAINT = "UQ_ACCOUNTS_USER_KNBTBL";
+
+    private static final String INSERT_ACCOUNT_SQL =
+            "INSERT INTO accounts_KNBtbl(acno, user_id, name, balance, mobile_number, account_type, account_status) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, 'ACTIVE')";
+
+    private static final AccountNumberAllocator accountNumbers = new AccountNumberAllocator();
+
+    /**
+     * Get the shared account number allocator
+     */
+    public static AccountNumberAllocator getAccountNumberAllocator() {
+        return accountNumbers;
+    }
+
     /**
-     * Add new account with duplicate check
+     * Add new account; fails if the user already has one
      */
-    public void addAccount(int userId, String name, double balance, String mobile, String type) throws Exception {
-        // This check prevents creating an account for a user who already has one.
-        if (getAccountByUserId(userId) != null) {
-            throw new Exception("This user already has a bank account linked.");
+    public void addAccount(int userId, String name, long balance, String mobile, String type) throws Exception {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(INSERT_ACCOUNT_SQL)) {
+            bindAccount(ps, accountNumbers.next(conn), userId, name, balance, mobile, type);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            if (isDuplicateAccount(e)) {
+                throw new Exception(DUPLICATE_ACCOUNT_MESSAGE);
+            }
+            throw e;
         }
+        accountNoByUserCache.invalidate(userId);
+    }
+
+    /**
+     * Open many accounts in JDBC batches on a single connection
+     * The acno and status of the given accounts are ignored; users that already
+     * have an account are reported as failures by input index.
+     * @return BatchResult with per-row failures and throughput
+     */
+    public BatchResult addAccounts(Collection<Account> accounts) throws Exception {
+        BatchResult result = new BatchResult(accounts.size());
+        long start = System.nanoTime();
+        List<Account> rows = new ArrayList<>(accounts);
 
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "INSERT INTO accounts_KNBtbl(acno, user_id, name, balance, mobile_number, account_type, account_status) " +
-                             "VALUES (acno_seq_KNBtbl.NEXTVAL, ?, ?, ?, ?, ?, 'ACTIVE')")) {
-            ps.setInt(1, userId);
-            ps.setString(2, name);
-            ps.setDouble(3, balance);
-            ps.setString(4, mobile);
-            ps.setString(5, type);
-            ps.executeUpdate();
+             PreparedStatement ps = conn.prepareStatement(INSERT_ACCOUNT_SQL)) {
+            conn.setAutoCommit(false);
+            for (int chunkStart = 0; chunkStart < rows.size(); chunkStart += DEFAULT_BATCH_SIZE) {
+                List<Account> chunk = rows.subList(chunkStart, Math.min(rows.size(), chunkStart + DEFAULT_BATCH_SIZE));
+                int[] acnos = accountNumbers.next(conn, chunk.size());
+                try {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        bindAccount(ps, acnos[i], chunk.get(i));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    conn.commit();
+                    result.addSucceeded(chunk.size());
+                } catch (BatchUpdateException e) {
+                    conn.rollback();
+                    ps.clearBatch();
+                    // Isolate the duplicates; the numbers reserved for them are simply skipped
+                    for (int i = 0; i < chunk.size(); i++) {
+                        try {
+                            bindAccount(ps, acnos[i], chunk.get(i));
+                            ps.executeUpdate();
+                            conn.commit();
+                            result.addSucceeded(1);
+                        } catch (SQLException rowError) {
+                            conn.rollback();
+                            result.addFailure(chunkStart + i, isDuplicateAccount(rowError)
+                                    ? DUPLICATE_ACCOUNT_MESSAGE : rowError.getMessage());
+                        }
+                    }
+                }
+            }
         }
+
+        for (Account a : rows) {
+            accountNoByUserCache.invalidate(a.getUserId());
+        }
+        result.setElapsedNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * True only if the insert broke the one-account-per-user constraint
+     * Any other ORA-00001, such as a clash on acno, is a real error.
+     */
+    private static boolean isDuplicateAccount(SQLException e) {
+        return e.getErrorCode() == UNIQUE_VIOLATION && e.getMessage() != null
+                && e.getMessage().toUpperCase().contains("." + ACCOUNT_USER_CONSTRAINT + ")");
+    }
+
+    private void bindAccount(PreparedStatement ps, int acno, Account a) throws SQLException {
+        bindAccount(ps, acno, a.getUserId(), a.getName(), a.getBalance(), a.getMobileNumber(), a.getAccountType());
+    }
+
+    private void bindAccount(PreparedStatement ps, int acno, int userId, String name, long balance,
+                             String mobile, String type) throws SQLException {
+        ps.setInt(1, acno);
+        ps.setInt(2, userId);
+        ps.setString(3, name);
+        ps.setBigDecimal(4, Money.toDecimal(balance));
+        ps.setString(5, mobile);
+        ps.setString(6, type);
     }
 
     /**
      * Update account balance
      */
-    public void updateAccount(int acno, double newBalance) throws Exception {
+    public void updateAccount(int acno, long newBalance) throws Exception {
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement("UPDATE accounts_KNBtbl SET balance=? WHERE acno=?")) {
-            ps.setDouble(1, newBalance);
+            ps.setBigDecimal(1, Money.toDecimal(newBalance));
             ps.setInt(2, acno);
             ps.executeUpdate();
         }
+        accountCache.invalidate(acno);
     }
 
     /**
      * Map ResultSet to Account object
+     * Reads by position, so the query must select ACCOUNT_COLUMNS in that order
      */
     private Account mapAccount(ResultSet rs) throws SQLException {
         return new Account(
-                rs.getInt("acno"),
-                rs.getInt("user_id"),
-                rs.getString("name"),
-                rs.getDouble("balance"),
-                rs.getString("mobile_number"),
-                rs.getString("account_type"),
-                rs.getString("account_status")
+                rs.getInt(1),
+                rs.getInt(2),
+                rs.getString(3),
+                Money.fromDecimal(rs.getBigDecimal(4)),
+                rs.getString(5),
+                rs.getString(6),
+                rs.getString(7)
         );
     }
 
@@ -258,191 +618,1391 @@ public class DatabaseManager {
 
     /**
      * Add new transaction
+     * @param balanceAfter The account's balance once this row is applied, in paise
      */
-    public void addTransaction(int acno, String type, double amount, int fromAcno, int toAcno, String status, String remarks) throws Exception {
+    public void addTransaction(int acno, String type, long amount, int fromAcno, int toAcno, String status, String remarks,
+                               long balanceAfter) throws Exception {
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(
-                     "INSERT INTO transactions_KNBtbl(acno, type, amount, from_acno, to_acno, status, remarks) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                     INSERT_TRANSACTION_SQL)) {
             ps.setInt(1, acno);
             ps.setString(2, type);
-            ps.setDouble(3, amount);
+            ps.setBigDecimal(3, Money.toDecimal(amount));
             ps.setInt(4, fromAcno);
             ps.setInt(5, toAcno);
             ps.setString(6, status);
             ps.setString(7, remarks);
+            ps.setBigDecimal(8, Money.toDecimal(balanceAfter));
             ps.executeUpdate();
         }
     }
 
     /**
-     * Get transactions for specific account
+     * Default number of ledger rows sent per executeBatch call
      */
-    public List<Transaction> getTransactionsForAccount(int acno) throws Exception {
-        List<Transaction> ret = new ArrayList<>();
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "SELECT * FROM transactions_KNBtbl WHERE acno=? ORDER BY date_time DESC")) {
-            ps.setInt(1, acno);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                ret.add(new Transaction(
-                        rs.getInt("tx_id"),
-                        rs.getInt("acno"),
-                        rs.getInt("from_acno"),
-                        rs.getInt("to_acno"),
-                        rs.getString("type"),
-                        rs.getDouble("amount"),
-                        rs.getTimestamp("date_time"),
-                        rs.getString("status"),
-                        rs.getString("remarks")
-                ));
-            }
-            return ret;
-        }
-    }
+    public static final int DEFAULT_BATCH_SIZE = 500;
 
-    // ==================== ADMIN OPERATIONS ====================
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO transactions_KNBtbl(acno, type, amount, from_acno, to_acno, status, remarks, balance_after) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
     /**
-     * Get accounts for branch summary
+     * Post many ledger rows using JDBC batching with the default chunk size
      */
-    public List<Account> getAccountsForBranchSummary() throws Exception {
-        return getAllAccounts();
+    public BatchResult addTransactions(Collection<Transaction> transactions) throws Exception {
+        return addTransactions(transactions, DEFAULT_BATCH_SIZE);
     }
 
     /**
-     * Get top customers by balance
+     * Post many ledger rows using JDBC batching on a single connection
+     * Each chunk is committed on its own; a chunk that fails is retried row by row
+     * so the good rows are kept and the bad ones are reported by input index.
+     * The txId and dateTime of the given transactions are ignored.
+     * @param transactions Rows to insert
+     * @param chunkSize Rows per executeBatch call
+     * @return BatchResult with per-row failures and throughput
      */
-    public List<User> getTopCustomers() throws Exception {
-        List<User> ret = new ArrayList<>();
+    public BatchResult addTransactions(Collection<Transaction> transactions, int chunkSize) throws Exception {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        BatchResult result = new BatchResult(transactions.size());
+        long start = System.nanoTime();
+
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "SELECT u.* FROM users_KNBtbl u JOIN accounts_KNBtbl a ON u.user_id = a.user_id " +
-                             "ORDER BY a.balance DESC FETCH FIRST 10 ROWS ONLY")) {
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) ret.add(mapUser(rs));
-            return ret;
+             PreparedStatement ps = conn.prepareStatement(INSERT_TRANSACTION_SQL)) {
+            conn.setAutoCommit(false);
+            List<Transaction> chunk = new ArrayList<>(Math.min(chunkSize, transactions.size()));
+            int chunkStart = 0;
+            for (Transaction tx : transactions) {
+                chunk.add(tx);
+                if (chunk.size() == chunkSize) {
+                    postChunk(conn, ps, chunk, chunkStart, result);
+                    chunkStart += chunk.size();
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                postChunk(conn, ps, chunk, chunkStart, result);
+            }
+        }
+
+        result.setElapsedNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    private void postChunk(Connection conn, PreparedStatement ps, List<Transaction> chunk,
+                           int chunkStart, BatchResult result) throws SQLException {
+        try {
+            for (Transaction tx : chunk) {
+                bindTransaction(ps, tx);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+            result.addSucceeded(chunk.size());
+        } catch (BatchUpdateException e) {
+            conn.rollback();
+            ps.clearBatch();
+            // Isolate the failing rows; drivers differ on how far a failed batch got
+            for (int i = 0; i < chunk.size(); i++) {
+                try {
+                    bindTransaction(ps, chunk.get(i));
+                    ps.executeUpdate();
+                    conn.commit();
+                    result.addSucceeded(1);
+                } catch (SQLException rowError) {
+                    conn.rollback();
+                    result.addFailure(chunkStart + i, rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    private void bindTransaction(PreparedStatement ps, Transaction tx) throws SQLException {
+        ps.setInt(1, tx.acno);
+        ps.setString(2, tx.type);
+        ps.setBigDecimal(3, Money.toDecimal(tx.amount));
+        ps.setInt(4, tx.fromAcno);
+        ps.setInt(5, tx.toAcno);
+        ps.setString(6, tx.status);
+        ps.setString(7, tx.remarks);
+        if (tx.balanceAfter != null) {
+            ps.setBigDecimal(8, Money.toDecimal(tx.balanceAfter));
+        } else {
+            ps.setNull(8, Types.NUMERIC);
         }
     }
 
     /**
-     * Log audit entry
+     * PL/SQL block that moves funds and writes both ledger rows in one round trip.
+     * Both rows are locked in acno order so opposing transfers cannot deadlock,
+     * and the debit is conditional on the balance so concurrent writers cannot
+     * overdraw the account or lose an update.
      */
-    public void logAudit(int userId, String action, String details) throws Exception {
+    private static final String TRANSFER_BLOCK =
+            "DECLARE " +
+            "  p_amount NUMBER := ?; p_from NUMBER := ?; p_to NUMBER := ?; " +
+            "  p_out_remarks VARCHAR2(255) := ?; p_in_remarks VARCHAR2(255) := ?; " +
+            "  v_lock NUMBER; v_status NUMBER := 0; v_from_bal NUMBER; v_to_bal NUMBER; " +
+            "BEGIN " +
+            "  BEGIN " +
+            "    SELECT acno INTO v_lock FROM accounts_KNBtbl WHERE acno = LEAST(p_from, p_to) FOR UPDATE; " +
+            "    SELECT acno INTO v_lock FROM accounts_KNBtbl WHERE acno = GREATEST(p_from, p_to) FOR UPDATE; " +
+            "    UPDATE accounts_KNBtbl SET balance = balance - p_amount " +
+            "      WHERE acno = p_from AND balance >= p_amount RETURNING balance INTO v_from_bal; " +
+            "    IF SQL%ROWCOUNT = 1 THEN " +
+            "      UPDATE accounts_KNBtbl SET balance = balance + p_amount " +
+            "        WHERE acno = p_to RETURNING balance INTO v_to_bal; " +
+            "      INSERT INTO transactions_KNBtbl(acno, type, amount, from_acno, to_acno, status, remarks, balance_after) " +
+            "        VALUES (p_from, 'TRANSFER_OUT', p_amount, p_from, p_to, 'SUCCESS', p_out_remarks, v_from_bal); " +
+            "      INSERT INTO transactions_KNBtbl(acno, type, amount, from_acno, to_acno, status, remarks, balance_after) " +
+            "        VALUES (p_to, 'TRANSFER_IN', p_amount, p_from, p_to, 'SUCCESS', p_in_remarks, v_to_bal); " +
+            "      v_status := 1; " +
+            "    END IF; " +
+            "  EXCEPTION WHEN NO_DATA_FOUND THEN v_status := -1; " +
+            "  END; " +
+            "  ? := v_status; ? := v_from_bal; ? := v_to_bal; " +
+            "END;";
+
+    /**
+     * Atomically transfer funds between two accounts
+     * Debit, credit and both ledger rows are applied in a single statement on one connection
+     * @return TransferResult with the balances as committed
+     */
+    public TransferResult transferFunds(int fromAcno, int toAcno, long amount) throws Exception {
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "INSERT INTO audit_log_KNBtbl(user_id, action, details) VALUES (?, ?, ?)")) {
-            ps.setInt(1, userId);
-            ps.setString(2, action);
-            ps.setString(3, details);
-            ps.executeUpdate();
+             CallableStatement cs = conn.prepareCall(TRANSFER_BLOCK)) {
+            cs.setBigDecimal(1, Money.toDecimal(amount));
+            cs.setInt(2, fromAcno);
+            cs.setInt(3, toAcno);
+            cs.setString(4, "To Account " + toAcno);
+            cs.setString(5, "From Account " + fromAcno);
+            cs.registerOutParameter(6, Types.INTEGER);
+            cs.registerOutParameter(7, Types.NUMERIC);
+            cs.registerOutParameter(8, Types.NUMERIC);
+            cs.execute();
+            accountCache.invalidate(fromAcno);
+            accountCache.invalidate(toAcno);
+
+            int status = cs.getInt(6);
+            if (status == 1) {
+                return new TransferResult(TransferResult.Status.SUCCESS,
+                        Money.fromDecimal(cs.getBigDecimal(7)), Money.fromDecimal(cs.getBigDecimal(8)));
+            }
+            return new TransferResult(status == 0 ? TransferResult.Status.INSUFFICIENT_FUNDS
+                    : TransferResult.Status.ACCOUNT_NOT_FOUND, 0, 0);
         }
     }
 
+    // Signed balance change; a debit only applies if the balance covers it
+    private static final String APPLY_DELTA_SQL =
+            "UPDATE accounts_KNBtbl SET balance = balance + ? WHERE acno = ? AND (? > 0 OR balance >= ?)";
+
+    // Oracle limits an IN list to 1000 expressions
+    private static final int MAX_IN_LIST = 1000;
+
     /**
-     * Update user role
+     * Debit one account once and credit many in a single database transaction
+     * Only PENDING legs are processed. Recipients that do not exist are marked
+     * ACCOUNT_NOT_FOUND and left out; the other legs commit together or not at all.
+     * Round trips do not grow with the number of legs: one existence check per
+     * 1000 accounts, one batch of balance updates and one batch of ledger rows.
+     * @return MultiTransferResult with the committed source balance
      */
-    public void updateUserRole(int userId, String role) throws Exception {
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "UPDATE users_KNBtbl SET role=? WHERE user_id=?")) {
-            ps.setString(1, role);
-            ps.setInt(2, userId);
-            ps.executeUpdate();
+    public MultiTransferResult transferMany(int fromAcno, List<TransferLeg> legs) throws Exception {
+        List<Integer> acnos = new ArrayList<>();
+        acnos.add(fromAcno);
+        for (TransferLeg leg : legs) {
+            if (leg.isPending()) acnos.add(leg.getToAcno());
+        }
+        if (acnos.size() == 1) {
+            return new MultiTransferResult(MultiTransferResult.Status.NO_VALID_LEGS, 0, 0, legs);
+        }
+
+        List<TransferLeg> valid = new ArrayList<>();
+        try (Connection conn = getConnection()) {
+            Set<Integer> existing = findExistingAccounts(conn, acnos);
+            if (!existing.contains(fromAcno)) {
+                markPending(legs, TransferLeg.Status.NOT_EXECUTED);
+                return new MultiTransferResult(MultiTransferResult.Status.ACCOUNT_NOT_FOUND, 0, 0, legs);
+            }
+
+            // Net change per account, applied in acno order so concurrent transfers lock rows in the same order
+            TreeMap<Integer, Long> deltas = new TreeMap<>();
+            long total = 0;
+            for (TransferLeg leg : legs) {
+                if (!leg.isPending()) continue;
+                if (!existing.contains(leg.getToAcno())) {
+                    leg.setStatus(TransferLeg.Status.ACCOUNT_NOT_FOUND);
+                    continue;
+                }
+                deltas.merge(leg.getToAcno(), leg.getAmount(), Money::add);
+                total = Money.add(total, leg.getAmount());
+                valid.add(leg);
+            }
+            if (valid.isEmpty()) {
+                return new MultiTransferResult(MultiTransferResult.Status.NO_VALID_LEGS, 0, 0, legs);
+            }
+            deltas.merge(fromAcno, -total, Money::add);
+
+            conn.setAutoCommit(false);
+            try {
+                int rejected = applyDeltas(conn, deltas);
+                if (rejected != 0) {
+                    conn.rollback();
+                    // Either the debit was not covered or a recipient was deleted since the check
+                    for (TransferLeg leg : valid) {
+                        if (leg.getToAcno() == rejected) leg.setStatus(TransferLeg.Status.ACCOUNT_NOT_FOUND);
+                    }
+                    markPending(valid, TransferLeg.Status.NOT_EXECUTED);
+                    return new MultiTransferResult(rejected == fromAcno ? MultiTransferResult.Status.INSUFFICIENT_FUNDS
+                            : MultiTransferResult.Status.ACCOUNT_NOT_FOUND, 0, 0, legs);
+                }
+                // Rows are locked by the updates; walk forward from the opening balances
+                Map<Integer, Long> running = lockBalances(conn, new ArrayList<>(deltas.keySet()));
+                for (Map.Entry<Integer, Long> e : deltas.entrySet()) {
+                    running.merge(e.getKey(), -e.getValue(), Money::add);
+                }
+                try (PreparedStatement ps = conn.prepareStatement(INSERT_TRANSACTION_SQL)) {
+                    for (TransferLeg leg : valid) {
+                        int to = leg.getToAcno();
+                        String remarks = leg.getRemarks() != null ? leg.getRemarks() : "To Account " + to;
+                        long fromAfter = running.merge(fromAcno, -leg.getAmount(), Money::add);
+                        long toAfter = running.merge(to, leg.getAmount(), Money::add);
+                        bindTransaction(ps, new Transaction(0, fromAcno, fromAcno, to, "TRANSFER_OUT",
+                                leg.getAmount(), null, "SUCCESS", remarks, fromAfter));
+                        ps.addBatch();
+                        bindTransaction(ps, new Transaction(0, to, fromAcno, to, "TRANSFER_IN",
+                                leg.getAmount(), null, "SUCCESS", "From Account " + fromAcno, toAfter));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                long fromBalance = running.get(fromAcno);
+                commitMoney(conn);
+                markPending(valid, TransferLeg.Status.CREDITED);
+                return new MultiTransferResult(MultiTransferResult.Status.SUCCESS, fromBalance, total, legs);
+            } catch (SQLException e) {
+                conn.rollback();
+                markPending(valid, TransferLeg.Status.NOT_EXECUTED);
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+                for (Integer acno : deltas.keySet()) {
+                    accountCache.invalidate(acno);
+                }
+            }
         }
     }
 
     /**
-     * Get configuration value (requires config_KNBtbl table)
+     * Apply signed balance changes as one batch
+     * @return The first account whose change was not applied, or 0 if all were
      */
-    public String getConfigValue(String key) throws Exception {
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "SELECT value FROM config_KNBtbl WHERE key=?")) {
-            ps.setString(1, key);
-            ResultSet rs = ps.executeQuery();
-            return rs.next() ? rs.getString("value") : null;
+    private int applyDeltas(Connection conn, TreeMap<Integer, Long> deltas) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(APPLY_DELTA_SQL)) {
+            for (Map.Entry<Integer, Long> e : deltas.entrySet()) {
+                long delta = e.getValue();
+                ps.setBigDecimal(1, Money.toDecimal(delta));
+                ps.setInt(2, e.getKey());
+                ps.setBigDecimal(3, Money.toDecimal(delta));
+                ps.setBigDecimal(4, Money.toDecimal(-delta));
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            int i = 0;
+            for (Integer acno : deltas.keySet()) {
+                if (counts[i++] == 0) return acno;
+            }
+            return 0;
+        }
+    }
+
+    private Set<Integer> findExistingAccounts(Connection conn, List<Integer> acnos) throws SQLException {
+        Set<Integer> found = new HashSet<>();
+        for (int start = 0; start < acnos.size(); start += MAX_IN_LIST) {
+            List<Integer> chunk = acnos.subList(start, Math.min(acnos.size(), start + MAX_IN_LIST));
+            String marks = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT acno FROM accounts_KNBtbl WHERE acno IN (" + marks + ")")) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setInt(i + 1, chunk.get(i));
+                }
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) found.add(rs.getInt(1));
+            }
+        }
+        return found;
+    }
+
+    private static void markPending(List<TransferLeg> legs, TransferLeg.Status status) {
+        for (TransferLeg leg : legs) {
+            if (leg.isPending()) leg.setStatus(status);
         }
     }
 
     /**
-     * Set configuration value
+     * Apply a batch of deposits, debits and transfers in one database transaction
+     * Every account involved is locked up front in acno order, the operations are
+     * checked in queue order against the locked balances, and the new balances and
+     * ledger rows are written as two JDBC batches. An operation that fails its own
+     * check (missing account, insufficient funds) is reported and does not affect the others.
+     * @return One result per operation, in the same order
      */
-    public void setConfigValue(String key, String value) throws Exception {
+    public List<TransferResult> applyLedgerBatch(List<LedgerOp> ops) throws Exception {
+        TreeSet<Integer> acnos = accountsOf(ops);
         try (Connection conn = getConnection()) {
-            try (PreparedStatement up = conn.prepareStatement("UPDATE config_KNBtbl SET value=? WHERE key=?")) {
-                up.setString(1, value);
-                up.setString(2, key);
-                int rows = up.executeUpdate();
-                if (rows == 0) {
-                    try (PreparedStatement ins = conn.prepareStatement("INSERT INTO config_KNBtbl(key, value) VALUES (?, ?)")) {
-                        ins.setString(1, key);
-                        ins.setString(2, value);
-                        ins.executeUpdate();
-                    }
+            conn.setAutoCommit(false);
+            try {
+                List<TransferResult> results = applyOps(conn, ops, acnos);
+                commitMoney(conn);
+                return results;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+                for (Integer acno : acnos) {
+                    accountCache.invalidate(acno);
                 }
             }
         }
     }
 
     /**
-     * Delete configuration value
+     * Commit a money movement; a failed commit may still have been applied on the server
      */
-    public void deleteConfigValue(String key) throws Exception {
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "DELETE FROM config_KNBtbl WHERE key=?")) {
-            ps.setString(1, key);
-            ps.executeUpdate();
+    private static void commitMoney(Connection conn) throws OutcomeUnknownException {
+        try {
+            conn.commit();
+        } catch (SQLException e) {
+            throw new OutcomeUnknownException("Commit failed; the money movement may have been saved", e);
         }
     }
 
     /**
-     * Get audit logs with limit
+     * Accounts touched by the operations, in acno (lock) order
      */
-    public List<AuditEntry> getAuditLogs(int limit) throws Exception {
-        List<AuditEntry> list = new ArrayList<>();
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "SELECT * FROM (SELECT * FROM audit_log_KNBtbl ORDER BY action_time DESC) WHERE ROWNUM <= ?")) {
-            ps.setInt(1, limit);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) list.add(new AuditEntry(
-                    rs.getInt("audit_id"), rs.getInt("user_id"), rs.getTimestamp("action_time"),
-                    rs.getString("action"), rs.getString("details")));
-            return list;
+    private static TreeSet<Integer> accountsOf(List<LedgerOp> ops) {
+        TreeSet<Integer> acnos = new TreeSet<>();
+        for (LedgerOp op : ops) {
+            if (op.getFromAcno() != 0) acnos.add(op.getFromAcno());
+            if (op.getToAcno() != 0) acnos.add(op.getToAcno());
         }
+        return acnos;
     }
 
     /**
-     * Get pending users for approval
+     * Lock the accounts, check and apply each operation in order, and write the
+     * changed balances and the ledger rows as two batches; the caller commits
      */
-    public List<User> getPendingUsers() throws Exception {
-        List<User> list = new ArrayList<>();
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "SELECT * FROM users_KNBtbl WHERE status='PENDING'")) {
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) list.add(mapUser(rs));
-            return list;
+    private List<TransferResult> applyOps(Connection conn, List<LedgerOp> ops, TreeSet<Integer> acnos) throws SQLException {
+        Map<Integer, Long> balances = lockBalances(conn, new ArrayList<>(acnos));
+        Map<Integer, Long> locked = new HashMap<>(balances);
+        List<TransferResult> results = new ArrayList<>(ops.size());
+        List<Transaction> ledger = new ArrayList<>();
+        for (LedgerOp op : ops) {
+            results.add(applyOp(op, balances, ledger));
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE accounts_KNBtbl SET balance=? WHERE acno=?")) {
+            for (Map.Entry<Integer, Long> e : balances.entrySet()) {
+                if (e.getValue().equals(locked.get(e.getKey()))) continue;
+                ps.setBigDecimal(1, Money.toDecimal(e.getValue()));
+                ps.setInt(2, e.getKey());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_TRANSACTION_SQL)) {
+            for (Transaction tx : ledger) {
+                bindTransaction(ps, tx);
+                ps.addBatch();
+            }
+            ps.executeBatch();
         }
+        return results;
     }
 
     /**
-     * Update user status
+     * Check one queued operation against the running balances and record its ledger rows
      */
-    public void updateUserStatus(int userId, String status) throws Exception {
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "UPDATE users_KNBtbl SET status=? WHERE user_id=?")) {
-            ps.setString(1, status);
-            ps.setInt(2, userId);
-            ps.executeUpdate();
+    private static TransferResult applyOp(LedgerOp op, Map<Integer, Long> balances, List<Transaction> ledger) {
+        int from = op.getFromAcno();
+        int to = op.getToAcno();
+        long amount = op.getAmount();
+        if ((from != 0 && !balances.containsKey(from)) || (to != 0 && !balances.containsKey(to))) {
+            return new TransferResult(TransferResult.Status.ACCOUNT_NOT_FOUND, 0, 0);
+        }
+        if (from != 0 && balances.get(from) < amount) {
+            return new TransferResult(TransferResult.Status.INSUFFICIENT_FUNDS, 0, 0);
+        }
+
+        long fromBalance = 0;
+        long toBalance = 0;
+        if (from != 0) {
+            fromBalance = Money.subtract(balances.get(from), amount);
+            balances.put(from, fromBalance);
+        }
+        if (to != 0) {
+            toBalance = Money.add(balances.get(to), amount);
+            balances.put(to, toBalance);
+        }
+
+        addLedgerRows(op, fromBalance, toBalance, ledger);
+        return new TransferResult(TransferResult.Status.SUCCESS, fromBalance, toBalance);
+    }
+
+    /**
+     * Ledger rows for one successful operation: two for a transfer, one otherwise
+     * @param fromBalance Source balance after the operation (ignored for a deposit)
+     * @param toBalance Destination balance after the operation (ignored for a debit)
+     */
+    private static void addLedgerRows(LedgerOp op, long fromBalance, long toBalance, List<Transaction> ledger) {
+        int from = op.getFromAcno();
+        int to = op.getToAcno();
+        long amount = op.getAmount();
+        if (op.isTransfer()) {
+            ledger.add(new Transaction(0, from, from, to, "TRANSFER_OUT", amount, null, "SUCCESS", "To Account " + to, fromBalance));
+            ledger.add(new Transaction(0, to, from, to, "TRANSFER_IN", amount, null, "SUCCESS", "From Account " + from, toBalance));
+        } else {
+            ledger.add(new Transaction(0, from != 0 ? from : to, from, to, op.getType(), amount, null,
+                    "SUCCESS", op.getRemarks(), from != 0 ? fromBalance : toBalance));
+        }
+    }
+
+    /**
+     * Apply operations journaled by the ledger engine in one database transaction
+     * The watermark row is locked first, so two syncers for the same journal
+     * serialise and a batch already applied is skipped. The accounts are locked in
+     * acno order and the operations replayed against their balances, without the
+     * funds check the engine has already made, so every ledger row gets its balance.
+     */
+    public void applyJournaledOps(String journalId, long lastSeq, List<LedgerOp> ops) throws Exception {
+        TreeSet<Integer> acnos = new TreeSet<>();
+        for (LedgerOp op : ops) {
+            if (op.getFromAcno() != 0) acnos.add(op.getFromAcno());
+            if (op.getToAcno() != 0) acnos.add(op.getToAcno());
+        }
+
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (lockWatermark(conn, journalId) >= lastSeq) {
+                    conn.rollback();
+                    return;
+                }
+                Map<Integer, Long> balances = lockBalances(conn, new ArrayList<>(acnos));
+                Map<Integer, Long> locked = new HashMap<>(balances);
+                List<Transaction> ledger = new ArrayList<>();
+                for (LedgerOp op : ops) {
+                    int from = op.getFromAcno();
+                    int to = op.getToAcno();
+                    if ((from != 0 && !balances.containsKey(from)) || (to != 0 && !balances.containsKey(to))) {
+                        // Only an account closed behind the engine's back can get here
+                        System.err.println("Ledger sync: skipping " + op + ", account no longer exists");
+                        continue;
+                    }
+                    long fromBalance = from != 0 ? balances.merge(from, -op.getAmount(), Money::add) : 0;
+                    long toBalance = to != 0 ? balances.merge(to, op.getAmount(), Money::add) : 0;
+                    addLedgerRows(op, fromBalance, toBalance, ledger);
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement("UPDATE accounts_KNBtbl SET balance=? WHERE acno=?")) {
+                    for (Map.Entry<Integer, Long> e : balances.entrySet()) {
+                        if (e.getValue().equals(locked.get(e.getKey()))) continue;
+                        ps.setBigDecimal(1, Money.toDecimal(e.getValue()));
+                        ps.setInt(2, e.getKey());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(INSERT_TRANSACTION_SQL)) {
+                    for (Transaction tx : ledger) {
+                        bindTransaction(ps, tx);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "MERGE INTO ledger_watermark_KNBtbl w USING (SELECT ? AS id, ? AS seq FROM dual) s " +
+                        "ON (w.journal_id = s.id) " +
+                        "WHEN MATCHED THEN UPDATE SET w.last_seq = s.seq, w.updated_at = CURRENT_TIMESTAMP " +
+                        "WHEN NOT MATCHED THEN INSERT (journal_id, last_seq) VALUES (s.id, s.seq)")) {
+                    ps.setString(1, journalId);
+                    ps.setLong(2, lastSeq);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+                for (Integer acno : acnos) {
+                    accountCache.invalidate(acno);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the last journal sequence applied for a ledger engine journal, or 0
+     */
+    public long getLedgerWatermark(String journalId) throws Exception {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT last_seq FROM ledger_watermark_KNBtbl WHERE journal_id=?")) {
+            ps.setString(1, journalId);
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private long lockWatermark(Connection conn, String journalId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT last_seq FROM ledger_watermark_KNBtbl WHERE journal_id=? FOR UPDATE")) {
+            ps.setString(1, journalId);
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Lock the given accounts (in list order) and read their balances
+     * Accounts that do not exist are simply absent from the returned map.
+     */
+    private Map<Integer, Long> lockBalances(Connection conn, List<Integer> acnos) throws SQLException {
+        Map<Integer, Long> balances = new TreeMap<>();
+        for (int start = 0; start < acnos.size(); start += MAX_IN_LIST) {
+            List<Integer> chunk = acnos.subList(start, Math.min(acnos.size(), start + MAX_IN_LIST));
+            String marks = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT acno, balance FROM accounts_KNBtbl WHERE acno IN (" + marks + ") ORDER BY acno FOR UPDATE")) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setInt(i + 1, chunk.get(i));
+                }
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) balances.put(rs.getInt(1), Money.fromDecimal(rs.getBigDecimal(2)));
+            }
+        }
+        return balances;
+    }
+
+    /**
+     * Get transactions for specific account
+     */
+    public List<Transaction> getTransactionsForAccount(int acno) throws Exception {
+        List<Transaction> ret = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT " + TRANSACTION_COLUMNS + " FROM transactions_KNBtbl WHERE acno=? ORDER BY date_time DESC")) {
+            ps.setInt(1, acno);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) ret.add(mapTransaction(rs));
+            return ret;
+        }
+    }
+
+    /**
+     * Get one page of an account statement using keyset pagination on (date_time, tx_id)
+     * Cost depends on the page size, not on how long the account history is.
+     * @param acno Account number
+     * @param from Inclusive lower bound on date_time, or null
+     * @param to Exclusive upper bound on date_time, or null
+     * @param type Transaction type filter, or null for all types
+     * @param after Cursor from the previous page, or null for the newest rows
+     * @param pageSize Maximum rows to return
+     * @return StatementPage with the rows and the cursor for the next page
+     */
+    public StatementPage getStatementPage(int acno, Timestamp from, Timestamp to, String type,
+                                          StatementPage.Cursor after, int pageSize) throws Exception {
+        return statementPage("transactions_KNBtbl", acno, from, to, type, after, pageSize);
+    }
+
+    /**
+     * Same as getStatementPage, but over the hot and archived ledger together
+     * Used to page past the hot window into rows LedgerArchiver has moved.
+     */
+    public StatementPage getFullStatementPage(int acno, Timestamp from, Timestamp to, String type,
+                                              StatementPage.Cursor after, int pageSize) throws Exception {
+        return statementPage(FULL_LEDGER, acno, from, to, type, after, pageSize);
+    }
+
+    private StatementPage statementPage(String source, int acno, Timestamp from, Timestamp to, String type,
+                                        StatementPage.Cursor after, int pageSize) throws Exception {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        StringBuilder sql = new StringBuilder("SELECT " + TRANSACTION_COLUMNS + " FROM " + source + " WHERE acno=?");
+        if (from != null) sql.append(" AND date_time >= ?");
+        if (to != null) sql.append(" AND date_time < ?");
+        if (type != null) sql.append(" AND type = ?");
+        if (after != null) sql.append(" AND (date_time < ? OR (date_time = ? AND tx_id < ?))");
+        sql.append(" ORDER BY date_time DESC, tx_id DESC FETCH FIRST ? ROWS ONLY");
+
+        List<Transaction> rows = new ArrayList<>(pageSize);
+        boolean more = false;
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            int i = 1;
+            ps.setInt(i++, acno);
+            if (from != null) ps.setTimestamp(i++, from);
+            if (to != null) ps.setTimestamp(i++, to);
+            if (type != null) ps.setString(i++, type);
+            if (after != null) {
+                ps.setTimestamp(i++, after.dateTime);
+                ps.setTimestamp(i++, after.dateTime);
+                ps.setInt(i++, after.txId);
+            }
+            // One extra row tells us whether another page exists
+            ps.setInt(i, pageSize + 1);
+            ps.setFetchSize(pageSize + 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (rows.size() == pageSize) {
+                        more = true;
+                        break;
+                    }
+                    rows.add(mapTransaction(rs));
+                }
+            }
+        }
+
+        StatementPage.Cursor next = null;
+        if (more) {
+            Transaction last = rows.get(rows.size() - 1);
+            next = new StatementPage.Cursor(last.dateTime, last.txId);
+        }
+        return new StatementPage(rows, next);
+    }
+
+    // Hot and archived ledger rows together; predicates on acno and date_time reach both indexes
+    private static final String FULL_LEDGER =
+            "(SELECT " + TRANSACTION_COLUMNS + " FROM transactions_KNBtbl " +
+            "UNION ALL SELECT " + TRANSACTION_COLUMNS + " FROM transactions_archive_KNBtbl)";
+
+    private static final Timestamp BEGINNING = new Timestamp(0);
+
+    /**
+     * Balance of an account just before asOf
+     * Takes the latest snapshot at or before asOf, then the newest ledger row between the
+     * snapshot and asOf: that row's balance_after is the answer, and with no such row the
+     * snapshot is. Only rows written before balances were recorded fall back to summing,
+     * and then only over the gap.
+     */
+    public long getBalanceAsOf(int acno, Timestamp asOf) throws Exception {
+        try (Connection conn = getConnection()) {
+            Timestamp snapshotAt = null;
+            long snapshotBalance = 0;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT snapshot_at, balance FROM balance_snapshots_KNBtbl WHERE acno=? AND snapshot_at <= ? " +
+                    "ORDER BY snapshot_at DESC FETCH FIRST 1 ROWS ONLY")) {
+                ps.setInt(1, acno);
+                ps.setTimestamp(2, asOf);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) {
+                    snapshotAt = rs.getTimestamp(1);
+                    snapshotBalance = Money.fromDecimal(rs.getBigDecimal(2));
+                }
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT balance_after FROM " + FULL_LEDGER + " WHERE acno=? AND date_time >= ? AND date_time < ? " +
+                    "ORDER BY date_time DESC, tx_id DESC FETCH FIRST 1 ROWS ONLY")) {
+                ps.setInt(1, acno);
+                ps.setTimestamp(2, snapshotAt != null ? snapshotAt : BEGINNING);
+                ps.setTimestamp(3, asOf);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) {
+                    BigDecimal balanceAfter = rs.getBigDecimal(1);
+                    if (balanceAfter != null) {
+                        return Money.fromDecimal(balanceAfter);
+                    }
+                } else if (snapshotAt != null) {
+                    return snapshotBalance;
+                }
+            }
+
+            if (snapshotAt != null) {
+                return Money.add(snapshotBalance, sumLedger(conn, acno, snapshotAt, asOf));
+            }
+            // No snapshot yet: work back from the live balance
+            long current;
+            try (PreparedStatement ps = conn.prepareStatement("SELECT balance FROM accounts_KNBtbl WHERE acno=?")) {
+                ps.setInt(1, acno);
+                ResultSet rs = ps.executeQuery();
+                if (!rs.next()) {
+                    throw new Exception("Account not found: " + acno);
+                }
+                current = Money.fromDecimal(rs.getBigDecimal(1));
+            }
+            return Money.subtract(current, sumLedger(conn, acno, asOf, null));
+        }
+    }
+
+    /**
+     * Net signed effect of an account's successful ledger rows dated in [from, to); to may be null
+     */
+    private long sumLedger(Connection conn, int acno, Timestamp from, Timestamp to) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT NVL(SUM(CASE WHEN to_acno = acno THEN amount ELSE -amount END), 0) FROM " + FULL_LEDGER +
+                " WHERE acno=? AND status = 'SUCCESS' AND date_time >= ?" + (to != null ? " AND date_time < ?" : ""))) {
+            ps.setInt(1, acno);
+            ps.setTimestamp(2, from);
+            if (to != null) ps.setTimestamp(3, to);
+            ResultSet rs = ps.executeQuery();
+            rs.next();
+            return Money.fromDecimal(rs.getBigDecimal(1));
+        }
+    }
+
+    /**
+     * Map ResultSet to Transaction object
+     * Reads by position, so the query must select TRANSACTION_COLUMNS in that order
+     */
+    private Transaction mapTransaction(ResultSet rs) throws SQLException {
+        return new Transaction(
+                rs.getInt(1),
+                rs.getInt(2),
+                rs.getInt(3),
+                rs.getInt(4),
+                rs.getString(5),
+                Money.fromDecimal(rs.getBigDecimal(6)),
+                rs.getTimestamp(7),
+                rs.getString(8),
+                rs.getString(9),
+                rs.getBigDecimal(10) == null ? null : Money.fromDecimal(rs.getBigDecimal(10))
+        );
+    }
+
+    // ==================== IDEMPOTENCY KEYS ====================
+    // A claim commits on its own before any money moves. If the claiming process dies
+    // before storing the outcome, the key would stay PENDING for good, so a retry of
+    // the same request may take over a claim older than the pending timeout.
+
+    public static final String IDEMPOTENCY_PENDING_TIMEOUT_KEY = "idempotency.pending_timeout_seconds";
+    public static final String IDEMPOTENCY_RETENTION_KEY = "idempotency.retention_days";
+    public static final int DEFAULT_IDEMPOTENCY_PENDING_TIMEOUT_SECONDS = 300;
+    public static final int DEFAULT_IDEMPOTENCY_RETENTION_DAYS = 30;
+    private static final int PURGE_BATCH_SIZE = 10_000;
+
+    /**
+     * Claim an idempotency key; the primary key on idem_key arbitrates between
+     * concurrent retries. The claim commits immediately, so a concurrent retry
+     * sees it as PENDING and does not wait for the first request to finish.
+     * A PENDING claim for the same request older than idempotency.pending_timeout_seconds
+     * is taken over, as its request is presumed to have died before moving money.
+     */
+    public IdempotencyRecord claimIdempotencyKey(String key, String operation, int acno, long amount) throws Exception {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "INSERT INTO idempotency_KNBtbl(idem_key, operation, acno, amount) VALUES (?, ?, ?, ?)")) {
+            ps.setString(1, key);
+            ps.setString(2, operation);
+            ps.setInt(3, acno);
+            ps.setBigDecimal(4, Money.toDecimal(amount));
+            ps.executeUpdate();
+            return null;
+        } catch (SQLException e) {
+            if (e.getErrorCode() != UNIQUE_VIOLATION) {
+                throw e;
+            }
+        }
+        int timeout = getConfigInt(IDEMPOTENCY_PENDING_TIMEOUT_KEY, DEFAULT_IDEMPOTENCY_PENDING_TIMEOUT_SECONDS);
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE idempotency_KNBtbl SET created_at = CURRENT_TIMESTAMP " +
+                     "WHERE idem_key=? AND status='PENDING' AND operation=? AND acno=? AND amount=? " +
+                     "AND created_at < CURRENT_TIMESTAMP - NUMTODSINTERVAL(?, 'SECOND')")) {
+            ps.setString(1, key);
+            ps.setString(2, operation);
+            ps.setInt(3, acno);
+            ps.setBigDecimal(4, Money.toDecimal(amount));
+            ps.setInt(5, timeout);
+            if (ps.executeUpdate() == 1) {
+                System.err.println("Took over idempotency key " + key + " left PENDING for over " + timeout + "s");
+                return null;
+            }
+        }
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT idem_key, operation, acno, amount, status FROM idempotency_KNBtbl WHERE idem_key=?")) {
+            ps.setString(1, key);
+            ResultSet rs = ps.executeQuery();
+            if (!rs.next()) {
+                throw new Exception("Idempotency key " + key + " was released by a failed request; retry it");
+            }
+            return new IdempotencyRecord(rs.getString(1), rs.getString(2), rs.getInt(3),
+                    Money.fromDecimal(rs.getBigDecimal(4)), IdempotencyRecord.Status.valueOf(rs.getString(5)));
+        }
+    }
+
+    public void completeIdempotencyKey(String key, boolean succeeded) throws Exception {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE idempotency_KNBtbl SET status=? WHERE idem_key=? AND status='PENDING'")) {
+            ps.setString(1, (succeeded ? IdempotencyRecord.Status.SUCCEEDED : IdempotencyRecord.Status.FAILED).name());
+            ps.setString(2, key);
+            ps.executeUpdate();
+        }
+    }
+
+    public void releaseIdempotencyKey(String key) throws Exception {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "DELETE FROM idempotency_KNBtbl WHERE idem_key=? AND status='PENDING'")) {
+            ps.setString(1, key);
+            ps.executeUpdate();
+        }
+    }
+
+    public void markIdempotencyKeyUnknown(String key) throws Exception {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE idempotency_KNBtbl SET status='UNKNOWN' WHERE idem_key=? AND status='PENDING'")) {
+            ps.setString(1, key);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Delete idempotency keys created before the cutoff, in batches of PURGE_BATCH_SIZE
+     * A retry arriving after its key was purged runs as a new request, so the
+     * retention (idempotency.retention_days) must outlast any client's retries.
+     * @return Number of keys deleted
+     */
+    public long purgeIdempotencyKeys(Timestamp before) throws Exception {
+        long total = 0;
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "DELETE FROM idempotency_KNBtbl WHERE created_at < ? AND ROWNUM <= ?")) {
+            ps.setTimestamp(1, before);
+            ps.setInt(2, PURGE_BATCH_SIZE);
+            int rows;
+            do {
+                rows = ps.executeUpdate();
+                total += rows;
+            } while (rows == PURGE_BATCH_SIZE);
+        }
+        return total;
+    }
+
+    // ==================== STANDING INSTRUCTIONS ====================
+
+    private static final String INSTRUCTION_COLUMNS =
+            "si_id, acno, utility_name, amount, frequency, next_run, status, last_result";
+
+    /**
+     * Store a new ACTIVE standing instruction
+     */
+    public StandingInstruction addInstruction(int acno, String utilityName, long amount,
+                                              StandingInstruction.Frequency frequency, Timestamp firstRun) throws Exception {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "INSERT INTO standing_instructions_KNBtbl(acno, utility_name, amount, frequency, next_run) " +
+                     "VALUES (?, ?, ?, ?, ?)", new String[]{"si_id"})) {
+            ps.setInt(1, acno);
+            ps.setString(2, utilityName);
+            ps.setBigDecimal(3, Money.toDecimal(amount));
+            ps.setString(4, frequency.name());
+            ps.setTimestamp(5, firstRun);
+            ps.executeUpdate();
+            ResultSet keys = ps.getGeneratedKeys();
+            keys.next();
+            return new StandingInstruction(keys.getLong(1), acno, utilityName, amount, frequency, firstRun,
+                    StandingInstruction.Status.ACTIVE, null);
+        }
+    }
+
+    public List<StandingInstruction> getInstructionsForAccount(int acno) throws Exception {
+        List<StandingInstruction> ret = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT " + INSTRUCTION_COLUMNS + " FROM standing_instructions_KNBtbl WHERE acno=? ORDER BY si_id")) {
+            ps.setInt(1, acno);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) ret.add(mapInstruction(rs));
+            return ret;
+        }
+    }
+
+    public void setInstructionStatus(long id, StandingInstruction.Status status) throws Exception {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement("UPDATE standing_instructions_KNBtbl SET status=? WHERE si_id=?")) {
+            ps.setString(1, status.name());
+            ps.setLong(2, id);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Stream ACTIVE instructions due in [from, to) off the (status, next_run) index
+     */
+    public void forEachInstructionDue(Timestamp from, Timestamp to, RowHandler<StandingInstruction> handler) throws Exception {
+        forEachRow("SELECT " + INSTRUCTION_COLUMNS + " FROM standing_instructions_KNBtbl " +
+                        "WHERE status = 'ACTIVE' AND next_run >= ? AND next_run < ?",
+                DEFAULT_FETCH_SIZE, this::mapInstruction, handler, from != null ? from : BEGINNING, to);
+    }
+
+    /**
+     * Pay a batch of due instructions in one database transaction
+     * The instruction rows are locked first and only those still at the run being
+     * paid go ahead; their debits go through the same checks as a group commit, and
+     * the advanced next_run is written in the same commit, so a crash or a second
+     * scheduler can never pay one run twice.
+     */
+    public List<StandingInstruction> runInstructions(List<StandingInstruction> due) throws Exception {
+        List<StandingInstruction> after = new ArrayList<>(due);
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            TreeSet<Integer> acnos = new TreeSet<>();
+            try {
+                Map<Long, Timestamp> stored = lockInstructions(conn, due);
+                List<Integer> runnable = new ArrayList<>();
+                List<LedgerOp> ops = new ArrayList<>();
+                for (int i = 0; i < due.size(); i++) {
+                    StandingInstruction si = due.get(i);
+                    if (!si.getNextRun().equals(stored.get(si.getId()))) {
+                        after.set(i, si.afterRun(StandingInstruction.Result.SKIPPED));
+                        continue;
+                    }
+                    runnable.add(i);
+                    ops.add(LedgerOp.debit("UTILITY_PAYMENT", si.getAcno(), si.getAmount(), si.getRemarks()));
+                }
+                acnos.addAll(accountsOf(ops));
+                List<TransferResult> results = applyOps(conn, ops, acnos);
+
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE standing_instructions_KNBtbl SET next_run=?, status=?, last_result=?, " +
+                        "last_run=CURRENT_TIMESTAMP WHERE si_id=?")) {
+                    for (int k = 0; k < runnable.size(); k++) {
+                        int i = runnable.get(k);
+                        StandingInstruction done = due.get(i).afterRun(resultOf(results.get(k)));
+                        after.set(i, done);
+                        ps.setTimestamp(1, done.getNextRun());
+                        ps.setString(2, done.getStatus().name());
+                        ps.setString(3, done.getLastResult().name());
+                        ps.setLong(4, done.getId());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                conn.commit();
+                return after;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+                for (Integer acno : acnos) {
+                    accountCache.invalidate(acno);
+                }
+            }
+        }
+    }
+
+    private static StandingInstruction.Result resultOf(TransferResult result) {
+        switch (result.getStatus()) {
+            case SUCCESS: return StandingInstruction.Result.PAID;
+            case INSUFFICIENT_FUNDS: return StandingInstruction.Result.INSUFFICIENT_FUNDS;
+            default: return StandingInstruction.Result.ACCOUNT_NOT_FOUND;
+        }
+    }
+
+    /**
+     * Lock the ACTIVE instruction rows among the given ones and read their next_run
+     */
+    private Map<Long, Timestamp> lockInstructions(Connection conn, List<StandingInstruction> instructions) throws SQLException {
+        Map<Long, Timestamp> stored = new HashMap<>();
+        for (int start = 0; start < instructions.size(); start += MAX_IN_LIST) {
+            List<StandingInstruction> chunk = instructions.subList(start, Math.min(instructions.size(), start + MAX_IN_LIST));
+            String marks = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT si_id, next_run FROM standing_instructions_KNBtbl " +
+                    "WHERE si_id IN (" + marks + ") AND status = 'ACTIVE' ORDER BY si_id FOR UPDATE")) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setLong(i + 1, chunk.get(i).getId());
+                }
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) stored.put(rs.getLong(1), rs.getTimestamp(2));
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Reads by position, so the query must select INSTRUCTION_COLUMNS in that order
+     */
+    private StandingInstruction mapInstruction(ResultSet rs) throws SQLException {
+        String lastResult = rs.getString(8);
+        return new StandingInstruction(
+                rs.getLong(1),
+                rs.getInt(2),
+                rs.getString(3),
+                Money.fromDecimal(rs.getBigDecimal(4)),
+                StandingInstruction.Frequency.valueOf(rs.getString(5)),
+                rs.getTimestamp(6),
+                StandingInstruction.Status.valueOf(rs.getString(7)),
+                lastResult == null ? null : StandingInstruction.Result.valueOf(lastResult)
+        );
+    }
+
+    // ==================== INTEREST POSTING ====================
+
+    public int[] getAccountRange(String accountType) throws Exception {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT MIN(acno), MAX(acno) FROM accounts_KNBtbl WHERE account_type = NVL(?, account_type)")) {
+            ps.setString(1, accountType);
+            ResultSet rs = ps.executeQuery();
+            rs.next();
+            int min = rs.getInt(1);
+            return rs.wasNull() ? null : new int[]{min, rs.getInt(2)};
         }
     }
 
+    public List<InterestChunk> getPostedInterestChunks(String runId) throws Exception {
+        List<InterestChunk> ret = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT from_acno, to_acno, accounts, interest FROM interest_runs_KNBtbl " +
+                     "WHERE run_id=? ORDER BY from_acno")) {
+            ps.setString(1, runId);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                ret.add(new InterestChunk(runId, rs.getInt(1), rs.getInt(2), rs.getInt(3),
+                        Money.fromDecimal(rs.getBigDecimal(4))));
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Post one chunk of an interest run in one database transaction
+     * The checkpoint row is inserted first, so a second worker or a rerun posting
+     * the same chunk waits on its key and then finds it taken. The accounts are
+     * read with a streaming locking cursor, and the credits and ledger rows are
+     * written as two JDBC batches before the checkpoint is filled in and committed.
+     */
+    public InterestChunk postInterestChunk(String runId, String accountType, int fromAcno, int toAcno, int rateBps)
+            throws Exception {
+        List<Integer> credited = new ArrayList<>();
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO interest_runs_KNBtbl(run_id, from_acno, to_acno) VALUES (?, ?, ?)")) {
+                    ps.setString(1, runId);
+                    ps.setInt(2, fromAcno);
+                    ps.setInt(3, toAcno);
+                    ps.executeUpdate();
+                } catch (SQLException e) {
+                    if (e.getErrorCode() != UNIQUE_VIOLATION) {
+                        throw e;
+                    }
+                    conn.rollback();
+                    return null;
+                }
+
+                long total = 0;
+                String remarks = "Interest for " + runId;
+                try (PreparedStatement select = conn.prepareStatement(
+                             "SELECT acno, balance FROM accounts_KNBtbl WHERE acno >= ? AND acno < ? " +
+                             "AND account_type = ? AND account_status = 'ACTIVE' AND balance > 0 ORDER BY acno FOR UPDATE",
+                             ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                     PreparedStatement update = conn.prepareStatement("UPDATE accounts_KNBtbl SET balance=? WHERE acno=?");
+                     PreparedStatement insert = conn.prepareStatement(INSERT_TRANSACTION_SQL)) {
+                    select.setFetchSize(DEFAULT_FETCH_SIZE);
+                    select.setInt(1, fromAcno);
+                    select.setInt(2, toAcno);
+                    select.setString(3, accountType);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            int acno = rs.getInt(1);
+                            long balance = Money.fromDecimal(rs.getBigDecimal(2));
+                            long interest = InterestChunk.monthlyInterest(balance, rateBps);
+                            if (interest == 0) continue;
+                            balance = Money.add(balance, interest);
+                            update.setBigDecimal(1, Money.toDecimal(balance));
+                            update.setInt(2, acno);
+                            update.addBatch();
+                            bindTransaction(insert, new Transaction(0, acno, 0, acno, "INTEREST", interest, null,
+                                    "SUCCESS", remarks, balance));
+                            insert.addBatch();
+                            credited.add(acno);
+                            total = Money.add(total, interest);
+                        }
+                    }
+                    update.executeBatch();
+                    insert.executeBatch();
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE interest_runs_KNBtbl SET accounts=?, interest=?, posted_at=CURRENT_TIMESTAMP " +
+                        "WHERE run_id=? AND from_acno=?")) {
+                    ps.setInt(1, credited.size());
+                    ps.setBigDecimal(2, Money.toDecimal(total));
+                    ps.setString(3, runId);
+                    ps.setInt(4, fromAcno);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+                return new InterestChunk(runId, fromAcno, toAcno, credited.size(), total);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+                for (Integer acno : credited) {
+                    accountCache.invalidate(acno);
+                }
+            }
+        }
+    }
+
+    // ==================== RECONCILIATION ====================
+
+    // One row per account: stored balance, latest snapshot, and the successful ledger rows since it
+    // (or all of them with no snapshot) summed, with the first row's balance_after and signed amount
+    private static final String RECONCILE_SQL =
+            "SELECT a.acno, a.balance, s.balance, COUNT(t.tx_id), " +
+            "NVL(SUM(CASE WHEN t.to_acno = t.acno THEN t.amount ELSE -t.amount END), 0), " +
+            "MAX(t.balance_after) KEEP (DENSE_RANK FIRST ORDER BY t.date_time, t.tx_id), " +
+            "MAX(CASE WHEN t.to_acno = t.acno THEN t.amount ELSE -t.amount END) " +
+            "    KEEP (DENSE_RANK FIRST ORDER BY t.date_time, t.tx_id) " +
+            "FROM accounts_KNBtbl a " +
+            "LEFT JOIN (SELECT acno, MAX(snapshot_at) snapshot_at, " +
+            "                  MAX(balance) KEEP (DENSE_RANK LAST ORDER BY snapshot_at) balance " +
+            "           FROM balance_snapshots_KNBtbl WHERE acno >= ? AND acno < ? GROUP BY acno) s ON s.acno = a.acno " +
+            "LEFT JOIN (SELECT * FROM " + FULL_LEDGER + " WHERE acno >= ? AND acno < ? AND status = 'SUCCESS') t " +
+            "  ON t.acno = a.acno AND t.date_time >= NVL(s.snapshot_at, ?) " +
+            "WHERE a.acno >= ? AND a.acno < ? " +
+            "GROUP BY a.acno, a.balance, s.snapshot_at, s.balance ORDER BY a.acno";
+
+    /**
+     * Aggregate the ledger per account in one statement, so Oracle reads the balances,
+     * snapshots and both ledger tables as of the same moment; rows stream at the fetch size
+     */
+    public void forEachReconciliation(int fromAcno, int toAcno, RowHandler<AccountReconciliation> handler) throws Exception {
+        forEachRow(RECONCILE_SQL, DEFAULT_FETCH_SIZE, this::mapReconciliation, handler,
+                fromAcno, toAcno, fromAcno, toAcno, BEGINNING, fromAcno, toAcno);
+    }
+
+    public void saveMismatches(String runId, List<AccountReconciliation> mismatches) throws Exception {
+        if (mismatches.isEmpty()) {
+            return;
+        }
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "MERGE INTO recon_mismatches_KNBtbl m USING (SELECT ? AS run_id, ? AS acno FROM dual) s " +
+                     "ON (m.run_id = s.run_id AND m.acno = s.acno) " +
+                     "WHEN MATCHED THEN UPDATE SET m.stored_balance = ?, m.ledger_balance = ?, m.difference = ?, " +
+                     "    m.ledger_rows = ?, m.found_at = CURRENT_TIMESTAMP " +
+                     "WHEN NOT MATCHED THEN INSERT (run_id, acno, stored_balance, ledger_balance, difference, ledger_rows) " +
+                     "    VALUES (s.run_id, s.acno, ?, ?, ?, ?)")) {
+            for (AccountReconciliation r : mismatches) {
+                ps.setString(1, runId);
+                ps.setInt(2, r.getAcno());
+                for (int base : new int[]{3, 7}) {
+                    ps.setBigDecimal(base, Money.toDecimal(r.getStoredBalance()));
+                    ps.setBigDecimal(base + 1, Money.toDecimal(r.getLedgerBalance()));
+                    ps.setBigDecimal(base + 2, Money.toDecimal(r.getDifference()));
+                    ps.setLong(base + 3, r.getLedgerRows());
+                }
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    public List<AccountReconciliation> getMismatches(String runId) throws Exception {
+        List<AccountReconciliation> ret = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT acno, stored_balance, ledger_balance, ledger_rows FROM recon_mismatches_KNBtbl " +
+                     "WHERE run_id=? ORDER BY acno")) {
+            ps.setString(1, runId);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                ret.add(new AccountReconciliation(rs.getInt(1), Money.fromDecimal(rs.getBigDecimal(2)),
+                        Money.fromDecimal(rs.getBigDecimal(3)), rs.getLong(4)));
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Reads by position, so the query must be RECONCILE_SQL
+     */
+    private AccountReconciliation mapReconciliation(ResultSet rs) throws SQLException {
+        long delta = Money.fromDecimal(rs.getBigDecimal(5));
+        BigDecimal snapshot = rs.getBigDecimal(3);
+        BigDecimal firstAfter = rs.getBigDecimal(6);
+        Long ledgerBalance = null;
+        if (snapshot != null) {
+            ledgerBalance = Money.add(Money.fromDecimal(snapshot), delta);
+        } else if (firstAfter != null) {
+            // Opening balance implied by the first row, then every row on top of it
+            long opening = Money.subtract(Money.fromDecimal(firstAfter), Money.fromDecimal(rs.getBigDecimal(7)));
+            ledgerBalance = Money.add(opening, delta);
+        }
+        return new AccountReconciliation(rs.getInt(1), Money.fromDecimal(rs.getBigDecimal(2)), ledgerBalance, rs.getLong(4));
+    }
+
+    // ==================== ADMIN OPERATIONS ====================
+
+    /**
+     * Get accounts for branch summary
+     */
+    public List<Account> getAccountsForBranchSummary() throws Exception {
+        return getAllAccounts();
+    }
+
+    /**
+     * Get top customers by balance
+     */
+    public List<User> getTopCustomers() throws Exception {
+        List<User> ret = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT " + USER_COLUMNS_U + " FROM users_KNBtbl u JOIN accounts_KNBtbl a ON u.user_id = a.user_id " +
+                             "ORDER BY a.balance DESC FETCH FIRST 10 ROWS ONLY")) {
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) ret.add(mapUser(rs));
+            return ret;
+        }
+    }
+
+    /**
+     * Get the shared asynchronous audit writer, starting it on first use
+     */
+    public static synchronized AuditWriter getAuditWriter() {
+        if (auditWriter == null) {
+            AuditWriter.Policy policy;
+            try {
+                policy = AuditWriter.Policy.valueOf(getConfig().getString("audit.backpressure", "CALLER_RUNS"));
+            } catch (IllegalArgumentException e) {
+                policy = AuditWriter.Policy.CALLER_RUNS;
+            }
+            Path spill = Paths.get(getConfig().getString("audit.spill_path", DEFAULT_AUDIT_SPILL_PATH));
+            auditWriter = new AuditWriter(new DatabaseManager(), AUDIT_QUEUE_CAPACITY, AUDIT_BATCH_SIZE,
+                    AUDIT_MAX_WAIT_MS, policy, spill);
+        }
+        return auditWriter;
+    }
+
+    /**
+     * Log audit entry
+     * The entry is queued and written in the background, stamped with the time of this call
+     */
+    public void logAudit(int userId, String action, String details) throws Exception {
+        getAuditWriter().submit(userId, action, details);
+    }
+
+    /**
+     * Update user role
+     */
+    public void updateUserRole(int userId, String role) throws Exception {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE users_KNBtbl SET role=? WHERE user_id=?")) {
+            ps.setString(1, role);
+            ps.setInt(2, userId);
+            ps.executeUpdate();
+        }
+        userCache.invalidate(userId);
+    }
+
+    /**
+     * Get the shared configuration snapshot, loading it on first use
+     */
+    public static synchronized ConfigService getConfig() {
+        if (config == null) {
+            config = new ConfigService(new DatabaseManager(), CONFIG_REFRESH_MS);
+        }
+        return config;
+    }
+
+    /**
+     * Get configuration value from the in-memory snapshot
+     */
+    public String getConfigValue(String key) throws Exception {
+        return getConfig().getString(key);
+    }
+
+    /**
+     * Set configuration value
+     */
+    public void setConfigValue(String key, String value) throws Exception {
+        getConfig().set(key, value);
+    }
+
+    /**
+     * Delete configuration value
+     */
+    public void deleteConfigValue(String key) throws Exception {
+        getConfig().delete(key);
+    }
+
+    /**
+     * Get audit logs with limit
+     */
+    public List<AuditEntry> getAuditLogs(int limit) throws Exception {
+        // Make this session's own recent actions visible before reading
+        if (auditWriter != null) {
+            auditWriter.flush(AUDIT_MAX_WAIT_MS * 5);
+        }
+        List<AuditEntry> list = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT " + AUDIT_COLUMNS + " FROM (SELECT " + AUDIT_COLUMNS + " FROM audit_log_KNBtbl ORDER BY action_time DESC) WHERE ROWNUM <= ?")) {
+            ps.setInt(1, limit);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) list.add(new AuditEntry(
+                    rs.getInt(1), rs.getInt(2), rs.getTimestamp(3), rs.getString(4), rs.getString(5)));
+            return list;
+        }
+    }
+
+    /**
+     * Get pending users for approval
+     */
+    public List<User> getPendingUsers() throws Exception {
+        List<User> list = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT " + USER_COLUMNS + " FROM users_KNBtbl WHERE status='PENDING'")) {
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) list.add(mapUser(rs));
+            return list;
+        }
+    }
+
+    /**
+     * Update user status
+     */
+    public void updateUserStatus(int userId, String status) throws Exception {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE users_KNBtbl SET status=? WHERE user_id=?")) {
+            ps.setString(1, status);
+            ps.setInt(2, userId);
+            ps.executeUpdate();
+        }
+        userCache.invalidate(userId);
+    }
+
     // ==================== STATISTICS ====================
 
+    /**
+     * Get dashboard counts from the trigger-maintained counters in one query
+     */
+    public SystemStats getSystemStats() throws Exception {
+        return new StatisticsService(this).getStats();
+    }
+
     /**
      * Get total user count
      */
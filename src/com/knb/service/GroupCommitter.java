@@ -0,0 +1,235 @@
+package com.knb.service;
+
+import com.knb.model.LedgerOp;
+import com.knb.model.TransferResult;
+import com.knb.repository.BankStorage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GroupCommitter coalesces money movements from many callers into shared commits
+ * Operations are queued, drained into micro-batches bounded by count or time,
+ * applied with one applyLedgerBatch call and completed through futures
+ */
+public class GroupCommitter implements LedgerPipeline {
+    public static final String ENABLED_KEY = "group_commit.enabled";
+    public static final String BATCH_SIZE_KEY = "group_commit.batch_size";
+    public static final String MAX_WAIT_KEY = "group_commit.max_wait_ms";
+    public static final int DEFAULT_BATCH_SIZE = 200;
+    public static final int DEFAULT_MAX_WAIT_MS = 5;
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final long PUT_RETRY_MS = 100;
+
+    private final BankStorage db;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final long maxWaitMillis;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    // Metrics
+    private final long startedNanos = System.nanoTime();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong commitNanos = new AtomicLong();
+    private volatile int lastBatchSize;
+
+    private static class Pending {
+        final LedgerOp op;
+        final CompletableFuture<TransferResult> future = new CompletableFuture<>();
+
+        Pending(LedgerOp op) {
+            this.op = op;
+        }
+    }
+
+    /**
+     * Create the committer and start its background thread
+     * @param batchSize Most operations applied in one commit
+     * @param maxWaitMillis Longest the first operation of a batch waits for company
+     */
+    public GroupCommitter(BankStorage db, int batchSize, long maxWaitMillis) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.db = db;
+        this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.batchSize = batchSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.worker = new Thread(this::run, "knb-group-commit");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Create a committer sized from group_commit.batch_size and group_commit.max_wait_ms
+     */
+    public static GroupCommitter fromConfig(BankStorage db) throws Exception {
+        return new GroupCommitter(db, db.getConfigInt(BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE),
+                db.getConfigInt(MAX_WAIT_KEY, DEFAULT_MAX_WAIT_MS));
+    }
+
+    /**
+     * Queue an operation; waits for space when the queue is full
+     * @return Future completed once the batch holding the operation has committed
+     */
+    @Override
+    public CompletableFuture<TransferResult> submit(LedgerOp op) throws Exception {
+        if (!running) {
+            throw new Exception("Group commit is shut down");
+        }
+        Pending pending = new Pending(op);
+        while (!queue.offer(pending, PUT_RETRY_MS, TimeUnit.MILLISECONDS)) {
+            if (!running) {
+                throw new Exception("Group commit is shut down");
+            }
+        }
+        // Shutdown may have drained the queue just before the operation went in
+        if (!running && queue.remove(pending)) {
+            throw new Exception("Group commit is shut down");
+        }
+        submitted.incrementAndGet();
+        return pending.future;
+    }
+
+    /**
+     * Stop taking operations, commit everything still queued and stop the thread
+     */
+    @Override
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        try {
+            worker.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            commit(rest);
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(maxWaitMillis > 0 ? maxWaitMillis : 1, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                running = false;
+                // Operations already taken from the queue are still owed an outcome
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        List<LedgerOp> ops = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            ops.add(p.op);
+        }
+        long start = System.nanoTime();
+        try {
+            List<TransferResult> results = db.applyLedgerBatch(ops);
+            commitNanos.addAndGet(System.nanoTime() - start);
+            batches.incrementAndGet();
+            lastBatchSize = batch.size();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results.get(i));
+            }
+            completed.addAndGet(batch.size());
+        } catch (Exception e) {
+            if (OutcomeUnknownException.isUnknown(e)) {
+                // The batch may have committed; applying it again could post every operation twice
+                Exception unknown = e instanceof OutcomeUnknownException ? e
+                        : new OutcomeUnknownException("Group commit failed; the batch may have been saved", e);
+                failed.addAndGet(batch.size());
+                for (Pending p : batch) {
+                    p.future.completeExceptionally(unknown);
+                }
+                return;
+            }
+            if (batch.size() == 1) {
+                failed.incrementAndGet();
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            // The batch rolled back; one bad operation (or a deadlock) must not fail its neighbours,
+            // so retry one by one
+            fallbacks.incrementAndGet();
+            for (Pending p : batch) {
+                commit(Collections.singletonList(p));
+            }
+        }
+    }
+
+    // ==================== METRICS ====================
+
+    public int getBatchSize() { return batchSize; }
+    public long getMaxWaitMillis() { return maxWaitMillis; }
+    public long getSubmitted() { return submitted.get(); }
+    public long getCompleted() { return completed.get(); }
+    public long getFailed() { return failed.get(); }
+    public long getBatches() { return batches.get(); }
+    public long getFallbacks() { return fallbacks.get(); }
+    public int getLastBatchSize() { return lastBatchSize; }
+    public int getQueueDepth() { return queue.size(); }
+
+    public double getAverageBatchSize() {
+        long b = batches.get();
+        return b == 0 ? 0 : (double) completed.get() / b;
+    }
+
+    public double getAverageCommitMillis() {
+        long b = batches.get();
+        return b == 0 ? 0 : commitNanos.get() / 1_000_000.0 / b;
+    }
+
+    /**
+     * Operations committed per second since the committer started
+     */
+    public double getTransactionsPerSecond() {
+        long elapsed = System.nanoTime() - startedNanos;
+        return elapsed == 0 ? 0 : completed.get() * 1_000_000_000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GroupCommitter[batch<=%d, wait<=%d ms: queued=%d, completed=%d, failed=%d, batches=%d, " +
+                        "avgBatch=%.1f, avgCommit=%.2f ms, fallbacks=%d, tps=%.0f]",
+                batchSize, maxWaitMillis, getQueueDepth(), getCompleted(), getFailed(), getBatches(),
+                getAverageBatchSize(), getAverageCommitMillis(), getFallbacks(), getTransactionsPerSecond());
+    }
+}
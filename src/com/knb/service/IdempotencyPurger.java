@@ -0,0 +1,49 @@
+package com.knb.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * IdempotencyPurger deletes idempotency keys older than the retention period
+ * Every keyed request leaves a row in idempotency_KNBtbl, so without a purge the
+ * table grows with the request count. Keys are kept for idempotency.retention_days
+ * (default 30), which must be longer than any client keeps retrying a request.
+ */
+public class IdempotencyPurger {
+    private final DatabaseManager db;
+
+    public IdempotencyPurger(DatabaseManager db) {
+        this.db = db;
+    }
+
+    /**
+     * Start of the retention period: keys created before this are purged
+     */
+    public Timestamp cutoff() throws Exception {
+        int days = db.getConfigInt(DatabaseManager.IDEMPOTENCY_RETENTION_KEY,
+                DatabaseManager.DEFAULT_IDEMPOTENCY_RETENTION_DAYS);
+        return Timestamp.valueOf(LocalDateTime.now().minusDays(days));
+    }
+
+    /**
+     * @return Number of keys deleted
+     */
+    public long purge() throws Exception {
+        return db.purgeIdempotencyKeys(cutoff());
+    }
+
+    /**
+     * Purge expired keys once, e.g. from a nightly scheduler
+     */
+    public static void main(String[] args) {
+        try {
+            long rows = new IdempotencyPurger(new DatabaseManager()).purge();
+            System.out.println("Idempotency purge complete: " + rows + " keys deleted");
+        } catch (Exception e) {
+            System.err.println("Idempotency purge failed: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            DatabaseManager.shutdown();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.knb.service;
+
+import com.knb.model.InterestChunk;
+import com.knb.model.Money;
+import com.knb.repository.BankStorage;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InterestPoster credits month-end interest to every active SAVINGS account
+ * The account number range is cut into fixed chunks that a fork-join pool posts
+ * in parallel. Each chunk is one postInterestChunk transaction: a streaming locking
+ * read of its accounts, one batched balance update, one batched ledger insert and
+ * a checkpoint row under the run id (the month, e.g. 2026-09).
+ *
+ * Chunks already checkpointed for the run are skipped, so a run that failed or was
+ * stopped part way is finished by running it again, and a rerun of a completed
+ * month credits nothing. A resumed run keeps the chunk size it started with.
+ */
+public class InterestPoster {
+    public static final String RATE_KEY = "interest.savings_rate_bps";
+    public static final String CHUNK_SIZE_KEY = "interest.chunk_size";
+    public static final String PARALLELISM_KEY = "interest.parallelism";
+    public static final int DEFAULT_RATE_BPS = 350;
+    public static final int DEFAULT_CHUNK_SIZE = 10_000;
+    private static final String ACCOUNT_TYPE = "SAVINGS";
+    private static final long PROGRESS_INTERVAL_SECONDS = 5;
+
+    private final BankStorage db;
+    private final int rateBps;
+    private final int chunkSize;
+    private final int parallelism;
+
+    // Progress
+    private volatile long startedNanos;
+    private final AtomicLong chunksTotal = new AtomicLong();
+    private final AtomicLong chunksPosted = new AtomicLong();
+    private final AtomicLong chunksSkipped = new AtomicLong();
+    private final AtomicLong chunksFailed = new AtomicLong();
+    private final AtomicLong accounts = new AtomicLong();
+    private final AtomicLong interest = new AtomicLong();
+
+    /**
+     * @param rateBps Annual interest rate in basis points (350 = 3.5%)
+     * @param chunkSize Account numbers covered by one chunk
+     * @param parallelism Chunks posted at once
+     */
+    public InterestPoster(BankStorage db, int rateBps, int chunkSize, int parallelism) {
+        if (rateBps < 0 || chunkSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("Rate must not be negative; chunk size and parallelism must be positive");
+        }
+        this.db = db;
+        this.rateBps = rateBps;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Create a poster from interest.savings_rate_bps, interest.chunk_size and interest.parallelism
+     */
+    public static InterestPoster fromConfig(BankStorage db) throws Exception {
+        return new InterestPoster(db,
+                db.getConfigInt(RATE_KEY, DEFAULT_RATE_BPS),
+                db.getConfigInt(CHUNK_SIZE_KEY, DEFAULT_CHUNK_SIZE),
+                db.getConfigInt(PARALLELISM_KEY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Post, or finish posting, the interest run for a month
+     * @return Interest credited by this call, in paise; progress counters start again from zero
+     * @throws Exception if any chunk failed; the others stay posted and a rerun retries the rest
+     */
+    public long post(YearMonth month) throws Exception {
+        if (db.getConfigBoolean(LedgerEngine.ENABLED_KEY, false)) {
+            // The engine, in whatever process runs it, owns the balances in memory;
+            // direct credits would go behind its back
+            throw new Exception("Interest cannot be posted while the ledger engine is running");
+        }
+        String runId = month.toString();
+        int[] range = db.getAccountRange(ACCOUNT_TYPE);
+        if (range == null) {
+            return 0;
+        }
+
+        for (AtomicLong counter : new AtomicLong[]{chunksTotal, chunksPosted, chunksSkipped, chunksFailed, accounts, interest}) {
+            counter.set(0);
+        }
+        List<InterestChunk> posted = db.getPostedInterestChunks(runId);
+        int size = posted.isEmpty() ? chunkSize : posted.get(0).getToAcno() - posted.get(0).getFromAcno();
+        List<int[]> pending = new ArrayList<>();
+        int next = 0;
+        // Chunks are aligned to multiples of the size, so a rerun cuts the same boundaries
+        for (long from = Math.floorDiv(range[0], size) * (long) size; from <= range[1]; from += size) {
+            int start = (int) from;
+            while (next < posted.size() && posted.get(next).getFromAcno() < start) next++;
+            if (next < posted.size() && posted.get(next).getFromAcno() == start) {
+                chunksSkipped.incrementAndGet();
+            } else {
+                pending.add(new int[]{start, (int) Math.min(from + size, Integer.MAX_VALUE)});
+            }
+            chunksTotal.incrementAndGet();
+        }
+
+        startedNanos = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new Chunks(runId, pending, 0, pending.size()));
+        } finally {
+            pool.shutdown();
+        }
+        if (chunksFailed.get() > 0) {
+            throw new Exception(chunksFailed.get() + " interest chunks failed for " + runId + "; run again to finish");
+        }
+        return interest.get();
+    }
+
+    /**
+     * Splits a run of chunks in half until one is left, then posts it
+     */
+    private class Chunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String runId;
+        private final List<int[]> chunks;
+        private final int lo, hi;
+
+        Chunks(String runId, List<int[]> chunks, int lo, int hi) {
+            this.runId = runId;
+            this.chunks = chunks;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Chunks(runId, chunks, lo, mid), new Chunks(runId, chunks, mid, hi));
+            } else if (hi > lo) {
+                postChunk(runId, chunks.get(lo));
+            }
+        }
+    }
+
+    private void postChunk(String runId, int[] chunk) {
+        try {
+            InterestChunk result = db.postInterestChunk(runId, ACCOUNT_TYPE, chunk[0], chunk[1], rateBps);
+            if (result == null) {
+                // Another poster got there first
+                chunksSkipped.incrementAndGet();
+                return;
+            }
+            chunksPosted.incrementAndGet();
+            accounts.addAndGet(result.getAccounts());
+            interest.addAndGet(result.getInterest());
+        } catch (Exception e) {
+            chunksFailed.incrementAndGet();
+            System.err.println("Interest chunk " + chunk[0] + "-" + chunk[1] + " failed: " + e.getMessage());
+        }
+    }
+
+    // ==================== PROGRESS ====================
+
+    public int getRateBps() { return rateBps; }
+    public int getChunkSize() { return chunkSize; }
+    public long getChunksTotal() { return chunksTotal.get(); }
+    public long getChunksPosted() { return chunksPosted.get(); }
+    public long getChunksSkipped() { return chunksSkipped.get(); }
+    public long getChunksFailed() { return chunksFailed.get(); }
+    public long getAccountsCredited() { return accounts.get(); }
+    public long getInterestPosted() { return interest.get(); }
+
+    /**
+     * Share of the run's chunks that are done, including those posted before a restart
+     */
+    public double getPercentComplete() {
+        long total = chunksTotal.get();
+        return total == 0 ? 0 : 100.0 * (chunksPosted.get() + chunksSkipped.get()) / total;
+    }
+
+    /**
+     * Accounts credited per second since posting started
+     */
+    public double getAccountsPerSecond() {
+        long elapsed = System.nanoTime() - startedNanos;
+        return startedNanos == 0 || elapsed == 0 ? 0 : accounts.get() * 1_000_000_000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InterestPoster[%d bps, chunk=%d: %.1f%% of %d chunks, posted=%d, skipped=%d, failed=%d, " +
+                        "accounts=%d, interest=₹%s, %.0f accounts/s]",
+                rateBps, chunkSize, getPercentComplete(), getChunksTotal(), getChunksPosted(), getChunksSkipped(),
+                getChunksFailed(), getAccountsCredited(), Money.format(getInterestPosted()), getAccountsPerSecond());
+    }
+
+    /**
+     * Post interest for the month just ended, or for the YYYY-MM given, reporting progress as it goes
+     */
+    public static void main(String[] args) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "knb-interest-progress");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            YearMonth month = args.length > 0 ? YearMonth.parse(args[0]) : YearMonth.now().minusMonths(1);
+            InterestPoster poster = fromConfig(new DatabaseManager());
+            reporter.scheduleAtFixedRate(() -> System.out.println(poster),
+                    PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            long paise = poster.post(month);
+            System.out.println("Interest for " + month + " posted: ₹" + Money.format(paise));
+            System.out.println(poster);
+        } catch (Exception e) {
+            System.err.println("Interest posting failed: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            reporter.shutdownNow();
+            DatabaseManager.shutdown();
+        }
+    }
+}
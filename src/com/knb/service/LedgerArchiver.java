@@ -0,0 +1,192 @@
+package com.knb.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * LedgerArchiver moves closed monthly partitions of transactions_KNBtbl
+ * into the compressed transactions_archive_KNBtbl and drops them from the hot table
+ *
+ * A partition is closed once its upper bound is older than the hot window
+ * (config key ledger.hot_months, default 12). Each partition is copied and
+ * logged in one transaction, then dropped, so a rerun after a failure never
+ * copies a partition twice.
+ *
+ * Dropping a partition fires no row triggers, so the same transaction takes the
+ * copied rows off the TRANSACTIONS counter, which counts the hot table only.
+ */
+public class LedgerArchiver {
+    public static final String HOT_MONTHS_KEY = "ledger.hot_months";
+    public static final int DEFAULT_HOT_MONTHS = 12;
+
+    // ORA-14758: the last partition in the range section cannot be dropped
+    private static final int LAST_RANGE_PARTITION = 14758;
+    private static final Pattern HIGH_VALUE = Pattern.compile("(\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2})");
+
+    private static final String COLUMNS = "tx_id, acno, type, amount, from_acno, to_acno, date_time, status, remarks, balance_after";
+
+    private final DatabaseManager db;
+
+    public LedgerArchiver(DatabaseManager db) {
+        this.db = db;
+    }
+
+    /**
+     * One partition of the ledger with its date range
+     */
+    private static class LedgerPartition {
+        final String name;
+        final Timestamp lower;  // null for the first partition
+        final Timestamp upper;
+
+        LedgerPartition(String name, Timestamp lower, Timestamp upper) {
+            this.name = name;
+            this.lower = lower;
+            this.upper = upper;
+        }
+    }
+
+    /**
+     * Start of the hot window: the first day of the month hotMonths months ago
+     * Statement queries bounded by this only touch hot partitions.
+     */
+    public static Timestamp hotWindowStart(int hotMonths) {
+        LocalDate start = LocalDate.now().withDayOfMonth(1).minusMonths(hotMonths);
+        return Timestamp.valueOf(start.atStartOfDay());
+    }
+
+    /**
+     * Archive every partition that ends before the hot window
+     * @return Number of ledger rows moved to the archive
+     */
+    public long archiveClosedPartitions() throws Exception {
+        int hotMonths = db.getConfigInt(HOT_MONTHS_KEY, DEFAULT_HOT_MONTHS);
+        Timestamp cutoff = hotWindowStart(hotMonths);
+        long total = 0;
+        try (Connection conn = db.getConnection()) {
+            for (LedgerPartition p : listPartitions(conn)) {
+                if (p.upper.after(cutoff)) {
+                    break;
+                }
+                long rows = copyToArchive(conn, p);
+                dropPartition(conn, p);
+                total += rows;
+                if (rows > 0) {
+                    System.out.println("Archived ledger partition " + p.name + " (< " + p.upper + "): " + rows + " rows");
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Partitions of the ledger in date order, with bounds parsed from the dictionary
+     */
+    private List<LedgerPartition> listPartitions(Connection conn) throws SQLException {
+        List<LedgerPartition> list = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT partition_name, high_value FROM user_tab_partitions " +
+                "WHERE table_name = 'TRANSACTIONS_KNBTBL' ORDER BY partition_position");
+             ResultSet rs = ps.executeQuery()) {
+            Timestamp lower = null;
+            while (rs.next()) {
+                String name = rs.getString(1);
+                Matcher m = HIGH_VALUE.matcher(rs.getString(2));
+                if (!m.find()) {
+                    break; // MAXVALUE; nothing after it can be closed
+                }
+                Timestamp upper = Timestamp.valueOf(m.group(1));
+                list.add(new LedgerPartition(name, lower, upper));
+                lower = upper;
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Copy a partition's rows with a direct-path insert and log it
+     * @return Rows copied; 0 if an earlier run already copied it and only the drop is left
+     */
+    private long copyToArchive(Connection conn, LedgerPartition p) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT rows_archived FROM ledger_archive_log_KNBtbl WHERE partition_high = ?")) {
+            ps.setTimestamp(1, p.upper);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return 0;
+                }
+            }
+        }
+
+        String range = p.lower == null ? "date_time < ?" : "date_time >= ? AND date_time < ?";
+        conn.setAutoCommit(false);
+        try {
+            int rows;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT /*+ APPEND */ INTO transactions_archive_KNBtbl (" + COLUMNS + ") " +
+                    "SELECT " + COLUMNS + " FROM transactions_KNBtbl WHERE " + range)) {
+                int i = 1;
+                if (p.lower != null) ps.setTimestamp(i++, p.lower);
+                ps.setTimestamp(i, p.upper);
+                rows = ps.executeUpdate();
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO ledger_archive_log_KNBtbl (partition_high, rows_archived) VALUES (?, ?)")) {
+                ps.setTimestamp(1, p.upper);
+                ps.setLong(2, rows);
+                ps.executeUpdate();
+            }
+            // The drop below bypasses trg_transactions_stats_KNBtbl
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE stats_counters_KNBtbl SET value = value - ? WHERE counter_name = 'TRANSACTIONS' AND slot = 0")) {
+                ps.setLong(1, rows);
+                ps.executeUpdate();
+            }
+            conn.commit();
+            return rows;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private void dropPartition(Connection conn, LedgerPartition p) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            try {
+                st.execute("ALTER TABLE transactions_KNBtbl DROP PARTITION " + p.name + " UPDATE GLOBAL INDEXES");
+            } catch (SQLException e) {
+                if (e.getErrorCode() != LAST_RANGE_PARTITION) {
+                    throw e;
+                }
+                // The initial range partition must stay; empty it instead
+                st.execute("ALTER TABLE transactions_KNBtbl TRUNCATE PARTITION " + p.name + " UPDATE GLOBAL INDEXES");
+            }
+        }
+    }
+
+    /**
+     * Run the archival job once, e.g. from a nightly scheduler
+     */
+    public static void main(String[] args) {
+        try {
+            long rows = new LedgerArchiver(new DatabaseManager()).archiveClosedPartitions();
+            System.out.println("Ledger archival complete: " + rows + " rows archived");
+        } catch (Exception e) {
+            System.err.println("Ledger archival failed: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            DatabaseManager.shutdown();
+        }
+    }
+}
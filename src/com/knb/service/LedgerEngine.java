@@ -0,0 +1,567 @@
+package com.knb.service;
+
+import com.knb.model.Account;
+import com.knb.model.LedgerOp;
+import com.knb.model.Money;
+import com.knb.model.TransferResult;
+import com.knb.repository.BankStorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * LedgerEngine keeps every balance in memory and applies all money movements on one writer thread
+ * Callers publish operations into a ring buffer; the writer checks and applies them
+ * in order against primitive arrays indexed by account number, appends each batch of
+ * successful operations to a local write-ahead journal and forces it to disk, and only
+ * then completes the callers' futures. A second thread copies journaled batches into
+ * the database tables, so the tables trail the engine by a short, bounded lag.
+ *
+ * On start any journaled operations past the database watermark are replayed, which
+ * makes a crash between acknowledgement and the table update lose nothing. The engine
+ * must be the only writer of balances while it is running.
+ */
+public class LedgerEngine implements LedgerPipeline {
+    public static final String ENABLED_KEY = "ledger.engine.enabled";
+    public static final String JOURNAL_PATH_KEY = "ledger.journal.path";
+    public static final String JOURNAL_ID_KEY = "ledger.journal.id";
+    public static final String BATCH_SIZE_KEY = "ledger.engine.batch_size";
+    public static final String DEFAULT_JOURNAL_PATH = "knb-ledger.journal";
+    public static final String DEFAULT_JOURNAL_ID = "primary";
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final int RING_CAPACITY = 16_384;
+    private static final int INITIAL_ACCOUNTS = 1024;
+    private static final long IDLE_NANOS = 50_000;
+    private static final long COMPACT_BYTES = 64L * 1024 * 1024;
+    private static final long SYNC_RETRY_MIN_MS = 100;
+    private static final long SYNC_RETRY_MAX_MS = 10_000;
+    private static final int MAX_SYNC_OPS = 10_000;
+
+    private final BankStorage db;
+    private final Path journalPath;
+    private final String journalId;
+    private final int batchSize;
+    private final FileChannel journal;
+    private final RingBuffer<Pending> ring = new RingBuffer<>(RING_CAPACITY);
+    private final BlockingQueue<SyncBatch> syncQueue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final Thread syncer;
+    private volatile boolean running = true;
+    private volatile boolean writerDone;
+    private volatile Exception failure;
+
+    // Owned by the writer thread
+    private long[] balances = new long[INITIAL_ACCOUNTS];
+    private boolean[] loaded = new boolean[INITIAL_ACCOUNTS];
+    private long nextSeq;
+
+    // Metrics
+    private final long startedNanos = System.nanoTime();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong journalNanos = new AtomicLong();
+    private final AtomicLong syncFailures = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private volatile long journaledSeq;
+    private volatile long syncedSeq;
+
+    private static class Pending {
+        final LedgerOp op;
+        final CompletableFuture<TransferResult> future = new CompletableFuture<>();
+
+        Pending(LedgerOp op) {
+            this.op = op;
+        }
+    }
+
+    /**
+     * Operations journaled as seq (lastSeq - ops.size(), lastSeq]
+     */
+    private static class SyncBatch {
+        final long lastSeq;
+        final List<LedgerOp> ops;
+
+        SyncBatch(long lastSeq, List<LedgerOp> ops) {
+            this.lastSeq = lastSeq;
+            this.ops = ops;
+        }
+    }
+
+    /**
+     * Recover from the journal, load every balance and start the writer and sync threads
+     * @param journalPath Local journal file, created if missing
+     * @param journalId Name of this journal's watermark row; one engine per id
+     * @param batchSize Most operations applied and journaled together
+     */
+    public LedgerEngine(BankStorage db, Path journalPath, String journalId, int batchSize) throws Exception {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.db = db;
+        this.journalPath = journalPath;
+        this.journalId = journalId;
+        this.batchSize = batchSize;
+        this.journal = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            recover();
+            db.forEachAccount(acc -> setBalance(acc.getAcno(), acc.getBalance()));
+        } catch (Exception e) {
+            journal.close();
+            throw e;
+        }
+
+        this.writer = new Thread(this::runWriter, "knb-ledger-writer");
+        this.syncer = new Thread(this::runSyncer, "knb-ledger-sync");
+        writer.setDaemon(true);
+        syncer.setDaemon(true);
+        writer.start();
+        syncer.start();
+    }
+
+    /**
+     * Publish an operation to the writer
+     * @return Future completed once the operation is applied and on disk in the journal
+     */
+    @Override
+    public CompletableFuture<TransferResult> submit(LedgerOp op) throws Exception {
+        if (!running) {
+            throw failure != null ? new Exception("Ledger engine stopped: " + failure.getMessage(), failure)
+                    : new Exception("Ledger engine is shut down");
+        }
+        Pending pending = new Pending(op);
+        submitted.incrementAndGet();
+        ring.put(pending);
+        return pending.future;
+    }
+
+    /**
+     * Stop taking operations, journal everything still queued and wait for the
+     * database to catch up; whatever is not synced in time is replayed on the next start
+     */
+    @Override
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            writer.join(timeoutMillis);
+            if (!writer.isAlive()) {
+                // Publishers that passed the running check just before shutdown
+                drainRing();
+            }
+            writerDone = true;
+            syncer.join(Math.max(1, deadline - System.currentTimeMillis()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Error closing ledger journal: " + e.getMessage());
+        }
+    }
+
+    // ==================== WRITER ====================
+
+    private void runWriter() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            if (ring.drainTo(batch, batchSize) == 0) {
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            process(batch);
+            batch.clear();
+            compactIfSynced();
+        }
+        if (failure != null) {
+            // Fail whatever was published before submit() saw the engine stop
+            drainRing();
+        }
+    }
+
+    private void drainRing() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (ring.drainTo(batch, batchSize) > 0) {
+            process(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Apply a batch in order, journal the successful operations, then complete every future
+     */
+    private void process(List<Pending> batch) {
+        if (failure != null) {
+            for (Pending p : batch) {
+                failed.incrementAndGet();
+                p.future.completeExceptionally(new Exception("Ledger engine stopped: " + failure.getMessage(), failure));
+            }
+            return;
+        }
+        Object[] outcomes = new Object[batch.size()];
+        List<LedgerOp> applied = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            LedgerOp op = batch.get(i).op;
+            try {
+                TransferResult result = apply(op);
+                if (result.isSuccess()) applied.add(op);
+                outcomes[i] = result;
+            } catch (Exception e) {
+                outcomes[i] = e;
+            }
+        }
+
+        if (!applied.isEmpty()) {
+            long start = System.nanoTime();
+            long end = -1;
+            try {
+                end = journal.size();
+                appendFrame(nextSeq, applied, end);
+                journalNanos.addAndGet(System.nanoTime() - start);
+                batches.incrementAndGet();
+                nextSeq += applied.size();
+                journaledSeq = nextSeq - 1;
+                syncQueue.add(new SyncBatch(nextSeq - 1, applied));
+            } catch (IOException e) {
+                failure = e;
+                running = false;
+                if (end >= 0 && discardFrom(end)) {
+                    // The frame is gone and nothing was acknowledged; put the balances back
+                    for (int i = applied.size() - 1; i >= 0; i--) {
+                        undo(applied.get(i));
+                    }
+                    System.err.println("Ledger journal write failed, engine stopped: " + e.getMessage());
+                    process(batch);
+                    return;
+                }
+                // Some of the frame may be on disk, and recover() would replay it on restart
+                System.err.println("Ledger journal write failed and could not be undone, engine stopped: " + e.getMessage());
+                Exception unknown = new OutcomeUnknownException(
+                        "Ledger journal write failed; the operation may still be applied on restart", e);
+                for (int i = 0; i < batch.size(); i++) {
+                    if (outcomes[i] instanceof TransferResult && ((TransferResult) outcomes[i]).isSuccess()) {
+                        outcomes[i] = unknown;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            CompletableFuture<TransferResult> future = batch.get(i).future;
+            if (outcomes[i] instanceof TransferResult) {
+                TransferResult result = (TransferResult) outcomes[i];
+                (result.isSuccess() ? completed : rejected).incrementAndGet();
+                future.complete(result);
+            } else {
+                failed.incrementAndGet();
+                future.completeExceptionally((Exception) outcomes[i]);
+            }
+        }
+    }
+
+    /**
+     * Check one operation against the in-memory balances and apply it
+     */
+    private TransferResult apply(LedgerOp op) throws Exception {
+        int from = op.getFromAcno();
+        int to = op.getToAcno();
+        long amount = op.getAmount();
+        if ((from != 0 && !ensureLoaded(from)) || (to != 0 && !ensureLoaded(to))) {
+            return new TransferResult(TransferResult.Status.ACCOUNT_NOT_FOUND, 0, 0);
+        }
+        if (from != 0 && balances[from] < amount) {
+            return new TransferResult(TransferResult.Status.INSUFFICIENT_FUNDS, 0, 0);
+        }
+        long fromBalance = from != 0 ? Money.subtract(balances[from], amount) : 0;
+        long toBalance = to != 0 ? Money.add(balances[to], amount) : 0;
+        if (from != 0) balances[from] = fromBalance;
+        if (to != 0) balances[to] = toBalance;
+        return new TransferResult(TransferResult.Status.SUCCESS, fromBalance, toBalance);
+    }
+
+    private void undo(LedgerOp op) {
+        if (op.getFromAcno() != 0) balances[op.getFromAcno()] += op.getAmount();
+        if (op.getToAcno() != 0) balances[op.getToAcno()] -= op.getAmount();
+    }
+
+    /**
+     * Make sure an account's balance is in memory, reading accounts opened since start
+     * @return false if the account does not exist
+     */
+    private boolean ensureLoaded(int acno) throws Exception {
+        if (acno < 0) {
+            return false;
+        }
+        if (acno < loaded.length && loaded[acno]) {
+            return true;
+        }
+        Account acc = db.getAccount(acno);
+        if (acc == null) {
+            return false;
+        }
+        setBalance(acno, acc.getBalance());
+        return true;
+    }
+
+    private void setBalance(int acno, long balance) {
+        if (acno >= balances.length) {
+            int size = Math.max(acno + 1, balances.length * 2);
+            long[] grownBalances = new long[size];
+            boolean[] grownLoaded = new boolean[size];
+            System.arraycopy(balances, 0, grownBalances, 0, balances.length);
+            System.arraycopy(loaded, 0, grownLoaded, 0, loaded.length);
+            balances = grownBalances;
+            loaded = grownLoaded;
+        }
+        balances[acno] = balance;
+        loaded[acno] = true;
+    }
+
+    /**
+     * Empty the journal once the database has caught up with all of it
+     */
+    private void compactIfSynced() {
+        try {
+            if (syncedSeq == journaledSeq && journal.size() > COMPACT_BYTES) {
+                journal.truncate(0);
+                journal.force(true);
+            }
+        } catch (IOException e) {
+            System.err.println("Ledger journal compaction failed: " + e.getMessage());
+        }
+    }
+
+    // ==================== JOURNAL ====================
+
+    /**
+     * Frame layout: [int length][payload][long CRC32 of payload]
+     * Payload: long firstSeq, int count, then per operation
+     * int from, int to, long amount, UTF type, boolean hasRemarks, UTF remarks
+     */
+    private void appendFrame(long firstSeq, List<LedgerOp> ops, long position) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * ops.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(firstSeq);
+        out.writeInt(ops.size());
+        for (LedgerOp op : ops) {
+            out.writeInt(op.getFromAcno());
+            out.writeInt(op.getToAcno());
+            out.writeLong(op.getAmount());
+            out.writeUTF(op.getType());
+            out.writeBoolean(op.getRemarks() != null);
+            if (op.getRemarks() != null) out.writeUTF(op.getRemarks());
+        }
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + payload.length + Long.BYTES);
+        frame.putInt(payload.length).put(payload).putLong(crc.getValue()).flip();
+        while (frame.hasRemaining()) {
+            position += journal.write(frame, position);
+        }
+        journal.force(false);
+    }
+
+    /**
+     * Cut the journal back to a size it had before a failed append and force it
+     * @return false if the journal could not be cut back, so the frame may survive
+     */
+    private boolean discardFrom(long size) {
+        try {
+            journal.truncate(size);
+            journal.force(true);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Ledger journal rollback failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Replay journaled operations the database has not seen, then start an empty journal
+     * A torn or corrupt frame at the tail was never acknowledged and is dropped.
+     */
+    private void recover() throws Exception {
+        long watermark = db.getLedgerWatermark(journalId);
+        long lastSeq = watermark;
+        List<LedgerOp> missing = new ArrayList<>();
+
+        long position = 0;
+        long size = journal.size();
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        while (position + Integer.BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            int length = header.flip().getInt();
+            if (length <= 0 || position + Integer.BYTES + length + Long.BYTES > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length + Long.BYTES);
+            readFully(body, position + Integer.BYTES);
+            byte[] payload = new byte[length];
+            body.flip().get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (crc.getValue() != body.getLong()) {
+                break;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            long seq = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++, seq++) {
+                int from = in.readInt();
+                int to = in.readInt();
+                long amount = in.readLong();
+                String type = in.readUTF();
+                String remarks = in.readBoolean() ? in.readUTF() : null;
+                if (seq > watermark) {
+                    missing.add(new LedgerOp(type, from, to, amount, remarks));
+                }
+                lastSeq = Math.max(lastSeq, seq);
+            }
+            position += Integer.BYTES + length + Long.BYTES;
+        }
+        if (position < size) {
+            System.err.println("Ledger journal " + journalPath + ": dropping " + (size - position) + " unreadable tail bytes");
+        }
+
+        if (!missing.isEmpty()) {
+            db.applyJournaledOps(journalId, lastSeq, missing);
+            replayed.addAndGet(missing.size());
+        }
+        journal.truncate(0);
+        journal.force(true);
+        nextSeq = lastSeq + 1;
+        journaledSeq = lastSeq;
+        syncedSeq = lastSeq;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (journal.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of ledger journal");
+            }
+        }
+    }
+
+    // ==================== SYNC ====================
+
+    /**
+     * Copy journaled batches into the tables, several at a time, retrying with backoff
+     */
+    private void runSyncer() {
+        List<SyncBatch> pending = new ArrayList<>();
+        long backoff = SYNC_RETRY_MIN_MS;
+        while (!writerDone || !syncQueue.isEmpty() || !pending.isEmpty()) {
+            try {
+                if (pending.isEmpty()) {
+                    SyncBatch first = syncQueue.poll(10, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    pending.add(first);
+                }
+                int ops = 0;
+                for (SyncBatch b : pending) ops += b.ops.size();
+                while (ops < MAX_SYNC_OPS) {
+                    SyncBatch next = syncQueue.poll();
+                    if (next == null) break;
+                    pending.add(next);
+                    ops += next.ops.size();
+                }
+
+                List<LedgerOp> merged = new ArrayList<>(ops);
+                for (SyncBatch b : pending) merged.addAll(b.ops);
+                long lastSeq = pending.get(pending.size() - 1).lastSeq;
+                try {
+                    db.applyJournaledOps(journalId, lastSeq, merged);
+                } catch (Exception e) {
+                    syncFailures.incrementAndGet();
+                    if (writerDone) {
+                        // Shutting down; the next start replays these from the journal
+                        System.err.println("Ledger sync stopped with " + merged.size() + " operations left in the journal: " + e.getMessage());
+                        return;
+                    }
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, SYNC_RETRY_MAX_MS);
+                    continue;
+                }
+                syncedSeq = lastSeq;
+                pending.clear();
+                backoff = SYNC_RETRY_MIN_MS;
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // ==================== METRICS ====================
+
+    public String getJournalId() { return journalId; }
+    public Path getJournalPath() { return journalPath; }
+    public int getBatchSize() { return batchSize; }
+    public long getSubmitted() { return submitted.get(); }
+    public long getCompleted() { return completed.get(); }
+    public long getRejected() { return rejected.get(); }
+    public long getFailed() { return failed.get(); }
+    public long getBatches() { return batches.get(); }
+    public long getSyncFailures() { return syncFailures.get(); }
+    public long getReplayed() { return replayed.get(); }
+    public int getQueueDepth() { return ring.size(); }
+    public boolean isRunning() { return running; }
+
+    /**
+     * Operations acknowledged to callers but not yet in the database tables
+     */
+    public long getSyncLag() {
+        return journaledSeq - syncedSeq;
+    }
+
+    public double getAverageBatchSize() {
+        long b = batches.get();
+        return b == 0 ? 0 : (double) completed.get() / b;
+    }
+
+    public double getAverageJournalMillis() {
+        long b = batches.get();
+        return b == 0 ? 0 : journalNanos.get() / 1_000_000.0 / b;
+    }
+
+    /**
+     * Operations applied per second since the engine started
+     */
+    public double getTransactionsPerSecond() {
+        long elapsed = System.nanoTime() - startedNanos;
+        return elapsed == 0 ? 0 : (completed.get() + rejected.get()) * 1_000_000_000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LedgerEngine[%s, batch<=%d: queued=%d, completed=%d, rejected=%d, failed=%d, " +
+                        "batches=%d, avgBatch=%.1f, avgJournal=%.2f ms, syncLag=%d, syncFailures=%d, replayed=%d, tps=%.0f]",
+                journalId, batchSize, getQueueDepth(), getCompleted(), getRejected(), getFailed(), getBatches(),
+                getAverageBatchSize(), getAverageJournalMillis(), getSyncLag(), getSyncFailures(), getReplayed(),
+                getTransactionsPerSecond());
+    }
+}
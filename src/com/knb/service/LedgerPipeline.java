@@ -0,0 +1,24 @@
+package com.knb.service;
+
+import com.knb.model.LedgerOp;
+import com.knb.model.TransferResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * LedgerPipeline is where TransactionManager sends money movements when it
+ * does not commit each one itself
+ * Implemented by the group committer and the single-writer ledger engine
+ */
+public interface LedgerPipeline {
+    /**
+     * Queue an operation
+     * @return Future completed once the operation is durable
+     */
+    CompletableFuture<TransferResult> submit(LedgerOp op) throws Exception;
+
+    /**
+     * Finish everything already queued and stop
+     */
+    void shutdown(long timeoutMillis);
+}
@@ -0,0 +1,369 @@
+package com.knb.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * MigrationRunner brings an existing database up to the current schema
+ * Applies numbered migrations in order, records each in schema_version_KNBtbl,
+ * and verifies that the indexes behind the hot queries exist
+ *
+ * Statements are written to be re-runnable: "already exists" errors from CREATE
+ * are ignored, so a database created from db/schema.sql simply records every version.
+ * Any other error a statement may hit on a second run (a seed row already present,
+ * a column already added) is declared on that statement alone with Step.expecting.
+ */
+public class MigrationRunner {
+
+    // ORA-00955 name already used, ORA-01408 column list already indexed
+    private static final Set<Integer> ALREADY_APPLIED_ERRORS = new HashSet<>(Arrays.asList(955, 1408));
+
+    // ORA-00001 unique constraint, ORA-01442 column already NOT NULL, ORA-01430 column already added
+    private static final int UNIQUE_VIOLATION = 1;
+    private static final int ALREADY_NOT_NULL = 1442;
+    private static final int COLUMN_EXISTS = 1430;
+
+    /**
+     * One statement of a migration, with the errors that mean it already ran
+     */
+    public static class Step {
+        public final String sql;
+        public final Set<Integer> alreadyApplied;
+
+        private Step(String sql, Set<Integer> alreadyApplied) {
+            this.sql = sql;
+            this.alreadyApplied = alreadyApplied;
+        }
+
+        public static Step of(String sql) {
+            return new Step(sql, ALREADY_APPLIED_ERRORS);
+        }
+
+        /**
+         * A statement that may also fail with the given errors when re-run
+         */
+        public static Step expecting(String sql, Integer... errors) {
+            Set<Integer> codes = new HashSet<>(ALREADY_APPLIED_ERRORS);
+            codes.addAll(Arrays.asList(errors));
+            return new Step(sql, codes);
+        }
+    }
+
+    /**
+     * One ordered schema change
+     */
+    public static class Migration {
+        public final int version;
+        public final String description;
+        public final List<Step> steps;
+
+        public Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.steps = new ArrayList<>();
+            for (String sql : statements) {
+                steps.add(Step.of(sql));
+            }
+        }
+
+        public Migration(int version, String description, Step... steps) {
+            this.version = version;
+            this.description = description;
+            this.steps = Arrays.asList(steps);
+        }
+    }
+
+    /**
+     * An index the application relies on: table plus leading columns, in order
+     */
+    public static class ExpectedIndex {
+        public final String table;
+        public final String columns;
+        public final String usedBy;
+
+        public ExpectedIndex(String table, String columns, String usedBy) {
+            this.table = table;
+            this.columns = columns;
+            this.usedBy = usedBy;
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = Arrays.asList(
+            new Migration(1, "Configuration table",
+                    "CREATE TABLE config_KNBtbl (key VARCHAR2(100) PRIMARY KEY, value VARCHAR2(500), " +
+                            "version NUMBER NOT NULL, updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)",
+                    "CREATE SEQUENCE config_version_seq_KNBtbl START WITH 1 INCREMENT BY 1"),
+
+            new Migration(2, "Dashboard counters",
+                    Step.of("CREATE TABLE stats_counters_KNBtbl (counter_name VARCHAR2(30) NOT NULL, slot NUMBER(2) NOT NULL, " +
+                            "value NUMBER DEFAULT 0 NOT NULL, PRIMARY KEY (counter_name, slot))"),
+                    // Seed rows are already present on a re-run
+                    Step.expecting("INSERT INTO stats_counters_KNBtbl (counter_name, slot, value) " +
+                            "SELECT c.name, s.slot, 0 FROM " +
+                            "(SELECT 'USERS' name FROM dual UNION ALL SELECT 'ACCOUNTS' FROM dual " +
+                            " UNION ALL SELECT 'TRANSACTIONS' FROM dual UNION ALL SELECT 'PENDING_USERS' FROM dual) c, " +
+                            "(SELECT LEVEL - 1 slot FROM dual CONNECT BY LEVEL <= 16) s", UNIQUE_VIOLATION),
+                    Step.of("CREATE OR REPLACE TRIGGER trg_users_stats_KNBtbl " +
+                            "AFTER INSERT OR DELETE OR UPDATE OF status ON users_KNBtbl FOR EACH ROW " +
+                            "DECLARE v_slot NUMBER := MOD(NVL(:NEW.user_id, :OLD.user_id), 16); v_pending NUMBER := 0; " +
+                            "BEGIN " +
+                            "  IF INSERTING THEN UPDATE stats_counters_KNBtbl SET value = value + 1 WHERE counter_name = 'USERS' AND slot = v_slot; " +
+                            "  ELSIF DELETING THEN UPDATE stats_counters_KNBtbl SET value = value - 1 WHERE counter_name = 'USERS' AND slot = v_slot; " +
+                            "  END IF; " +
+                            "  IF :NEW.status = 'PENDING' THEN v_pending := v_pending + 1; END IF; " +
+                            "  IF :OLD.status = 'PENDING' THEN v_pending := v_pending - 1; END IF; " +
+                            "  IF v_pending <> 0 THEN UPDATE stats_counters_KNBtbl SET value = value + v_pending " +
+                            "    WHERE counter_name = 'PENDING_USERS' AND slot = v_slot; END IF; " +
+                            "END;"),
+                    Step.of("CREATE OR REPLACE TRIGGER trg_accounts_stats_KNBtbl " +
+                            "AFTER INSERT OR DELETE ON accounts_KNBtbl FOR EACH ROW " +
+                            "BEGIN UPDATE stats_counters_KNBtbl SET value = value + CASE WHEN INSERTING THEN 1 ELSE -1 END " +
+                            "WHERE counter_name = 'ACCOUNTS' AND slot = MOD(NVL(:NEW.acno, :OLD.acno), 16); END;"),
+                    Step.of("CREATE OR REPLACE TRIGGER trg_transactions_stats_KNBtbl " +
+                            "AFTER INSERT OR DELETE ON transactions_KNBtbl FOR EACH ROW " +
+                            "BEGIN UPDATE stats_counters_KNBtbl SET value = value + CASE WHEN INSERTING THEN 1 ELSE -1 END " +
+                            "WHERE counter_name = 'TRANSACTIONS' AND slot = MOD(NVL(:NEW.tx_id, :OLD.tx_id), 16); END;"),
+                    // Backfill from the base tables; safe to repeat
+                    Step.of("UPDATE stats_counters_KNBtbl SET value = 0"),
+                    Step.of("UPDATE stats_counters_KNBtbl SET value = CASE counter_name " +
+                            "WHEN 'USERS' THEN (SELECT COUNT(*) FROM users_KNBtbl) " +
+                            "WHEN 'ACCOUNTS' THEN (SELECT COUNT(*) FROM accounts_KNBtbl) " +
+                            "WHEN 'TRANSACTIONS' THEN (SELECT COUNT(*) FROM transactions_KNBtbl) " +
+                            "WHEN 'PENDING_USERS' THEN (SELECT COUNT(*) FROM users_KNBtbl WHERE status = 'PENDING') " +
+                            "END WHERE slot = 0")),
+
+            new Migration(3, "Performance indexes",
+                    // Statements: WHERE acno = ? ORDER BY date_time DESC, tx_id DESC (scanned backwards)
+                    "CREATE INDEX idx_tx_acno_time_KNBtbl ON transactions_KNBtbl (acno, date_time, tx_id)",
+                    // getUsersByRole (role + ACTIVE) and getPendingUsers (status only)
+                    "CREATE INDEX idx_users_status_role_KNBtbl ON users_KNBtbl (status, role)",
+                    // getAuditLogs: newest entries first
+                    "CREATE INDEX idx_audit_time_KNBtbl ON audit_log_KNBtbl (action_time)"),
+
+            new Migration(4, "Monthly ledger partitions and archive",
+                    Step.expecting("ALTER TABLE transactions_KNBtbl MODIFY date_time NOT NULL", ALREADY_NOT_NULL),
+                    // Online conversion; the statement index becomes LOCAL to each month
+                    Step.of("BEGIN " +
+                            "  FOR t IN (SELECT 1 FROM user_tables WHERE table_name = 'TRANSACTIONS_KNBTBL' AND partitioned = 'NO') LOOP " +
+                            "    EXECUTE IMMEDIATE 'ALTER TABLE transactions_KNBtbl MODIFY PARTITION BY RANGE (date_time) " +
+                            "INTERVAL (NUMTOYMINTERVAL(1, ''MONTH'')) " +
+                            "(PARTITION p_ledger_initial VALUES LESS THAN (TIMESTAMP ''2024-01-01 00:00:00'')) " +
+                            "ONLINE UPDATE INDEXES (idx_tx_acno_time_KNBtbl LOCAL)'; " +
+                            "  END LOOP; " +
+                            "END;"),
+                    Step.of("CREATE TABLE transactions_archive_KNBtbl (tx_id NUMBER PRIMARY KEY, acno NUMBER(12), " +
+                            "type VARCHAR2(20) NOT NULL, amount NUMBER(15,2) NOT NULL, from_acno NUMBER(12), to_acno NUMBER(12), " +
+                            "date_time TIMESTAMP NOT NULL, status VARCHAR2(20), remarks VARCHAR2(255)) COMPRESS"),
+                    Step.of("CREATE INDEX idx_tx_archive_acno_KNBtbl ON transactions_archive_KNBtbl (acno, date_time)"),
+                    Step.of("CREATE TABLE ledger_archive_log_KNBtbl (partition_high TIMESTAMP PRIMARY KEY, " +
+                            "rows_archived NUMBER NOT NULL, archived_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP)")),
+
+            new Migration(5, "Block allocation of account numbers",
+                    "ALTER SEQUENCE acno_seq_KNBtbl INCREMENT BY " + AccountNumberAllocator.BLOCK_SIZE),
+
+            new Migration(6, "Idempotency keys",
+                    "CREATE TABLE idempotency_KNBtbl (idem_key VARCHAR2(64) PRIMARY KEY, " +
+                            "operation VARCHAR2(40) NOT NULL, acno NUMBER(12) NOT NULL, amount NUMBER(15,2) NOT NULL, " +
+                            "status VARCHAR2(10) DEFAULT 'PENDING' NOT NULL, created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)"),
+
+            new Migration(7, "Ledger engine journal watermark",
+                    "CREATE TABLE ledger_watermark_KNBtbl (journal_id VARCHAR2(40) PRIMARY KEY, " +
+                            "last_seq NUMBER NOT NULL, updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)"),
+
+            new Migration(8, "Running balances and balance snapshots",
+                    // Rows written before this stay NULL; as-of queries sum across them
+                    Step.expecting("ALTER TABLE transactions_KNBtbl ADD (balance_after NUMBER(15,2))", COLUMN_EXISTS),
+                    Step.expecting("ALTER TABLE transactions_archive_KNBtbl ADD (balance_after NUMBER(15,2))", COLUMN_EXISTS),
+                    Step.of("CREATE TABLE balance_snapshots_KNBtbl (acno NUMBER(12), snapshot_at TIMESTAMP, " +
+                            "balance NUMBER(15,2) NOT NULL, PRIMARY KEY (acno, snapshot_at)) ORGANIZATION INDEX")),
+
+            new Migration(9, "Standing instructions",
+                    "CREATE TABLE standing_instructions_KNBtbl (" +
+                            "si_id NUMBER GENERATED BY DEFAULT ON NULL AS IDENTITY PRIMARY KEY, " +
+                            "acno NUMBER(12) NOT NULL REFERENCES accounts_KNBtbl(acno), " +
+                            "utility_name VARCHAR2(100) NOT NULL, amount NUMBER(15,2) NOT NULL, " +
+                            "frequency VARCHAR2(10) NOT NULL, next_run TIMESTAMP NOT NULL, " +
+                            "status VARCHAR2(10) DEFAULT 'ACTIVE' NOT NULL, last_result VARCHAR2(20), last_run TIMESTAMP)",
+                    "CREATE INDEX idx_si_due_KNBtbl ON standing_instructions_KNBtbl (status, next_run)"),
+
+            new Migration(10, "Interest run checkpoints",
+                    "CREATE TABLE interest_runs_KNBtbl (run_id VARCHAR2(7), from_acno NUMBER(12), " +
+                            "to_acno NUMBER(12) NOT NULL, accounts NUMBER DEFAULT 0 NOT NULL, " +
+                            "interest NUMBER(15,2) DEFAULT 0 NOT NULL, posted_at TIMESTAMP, " +
+                            "PRIMARY KEY (run_id, from_acno)) ORGANIZATION INDEX"),
+
+            new Migration(11, "Reconciliation mismatch report",
+                    "CREATE TABLE recon_mismatches_KNBtbl (run_id VARCHAR2(20), acno NUMBER(12), " +
+                            "stored_balance NUMBER(15,2) NOT NULL, ledger_balance NUMBER(15,2) NOT NULL, " +
+                            "difference NUMBER(15,2) NOT NULL, ledger_rows NUMBER NOT NULL, " +
+                            "found_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (run_id, acno))"),
+
+            new Migration(12, "Named one-account-per-user constraint",
+                    // The constraint was created unnamed; ORA-00001 is matched on this name
+                    "BEGIN FOR c IN (SELECT uc.constraint_name FROM user_constraints uc " +
+                            "JOIN user_cons_columns cc ON cc.constraint_name = uc.constraint_name " +
+                            "WHERE uc.table_name = 'ACCOUNTS_KNBTBL' AND uc.constraint_type = 'U' " +
+                            "AND uc.constraint_name <> '" + DatabaseManager.ACCOUNT_USER_CONSTRAINT + "' " +
+                            "GROUP BY uc.constraint_name HAVING COUNT(*) = 1 AND MAX(cc.column_name) = 'USER_ID') LOOP " +
+                            "EXECUTE IMMEDIATE 'ALTER TABLE accounts_KNBtbl RENAME CONSTRAINT ' || c.constraint_name || " +
+                            "' TO " + DatabaseManager.ACCOUNT_USER_CONSTRAINT + "'; END LOOP; END;"),
+
+            new Migration(13, "Idempotency key retention",
+                    "CREATE INDEX idx_idempotency_created_KNBtbl ON idempotency_KNBtbl (created_at)"),
+
+            new Migration(14, "Counters updated once per statement",
+                    // A row trigger took one slot per row, so a batch of 16 rows locked every slot in
+                    // tx_id order and two batches could deadlock. Count the rows and update this
+                    // session's slot once; a JDBC batch is one statement execution.
+                    Step.of("CREATE OR REPLACE TRIGGER trg_accounts_stats_KNBtbl " +
+                            "FOR INSERT OR DELETE ON accounts_KNBtbl COMPOUND TRIGGER " +
+                            "  v_delta NUMBER := 0; " +
+                            "  AFTER EACH ROW IS BEGIN v_delta := v_delta + CASE WHEN INSERTING THEN 1 ELSE -1 END; END AFTER EACH ROW; " +
+                            "  AFTER STATEMENT IS BEGIN " +
+                            "    IF v_delta <> 0 THEN UPDATE stats_counters_KNBtbl SET value = value + v_delta " +
+                            "      WHERE counter_name = 'ACCOUNTS' AND slot = MOD(TO_NUMBER(SYS_CONTEXT('USERENV', 'SID')), 16); END IF; " +
+                            "  END AFTER STATEMENT; " +
+                            "END trg_accounts_stats_KNBtbl;"),
+                    Step.of("CREATE OR REPLACE TRIGGER trg_transactions_stats_KNBtbl " +
+                            "FOR INSERT OR DELETE ON transactions_KNBtbl COMPOUND TRIGGER " +
+                            "  v_delta NUMBER := 0; " +
+                            "  AFTER EACH ROW IS BEGIN v_delta := v_delta + CASE WHEN INSERTING THEN 1 ELSE -1 END; END AFTER EACH ROW; " +
+                            "  AFTER STATEMENT IS BEGIN " +
+                            "    IF v_delta <> 0 THEN UPDATE stats_counters_KNBtbl SET value = value + v_delta " +
+                            "      WHERE counter_name = 'TRANSACTIONS' AND slot = MOD(TO_NUMBER(SYS_CONTEXT('USERENV', 'SID')), 16); END IF; " +
+                            "  END AFTER STATEMENT; " +
+                            "END trg_transactions_stats_KNBtbl;"))
+    );
+
+    private static final List<ExpectedIndex> EXPECTED_INDEXES = Arrays.asList(
+            new ExpectedIndex("TRANSACTIONS_KNBTBL", "ACNO,DATE_TIME", "account statements"),
+            new ExpectedIndex("USERS_KNBTBL", "STATUS,ROLE", "role and pending-user listings"),
+            new ExpectedIndex("AUDIT_LOG_KNBTBL", "ACTION_TIME", "recent audit log")
+    );
+
+    private final DatabaseManager db;
+
+    public MigrationRunner(DatabaseManager db) {
+        this.db = db;
+    }
+
+    /**
+     * Get every migration this build knows about, in order
+     */
+    public static List<Migration> getMigrations() {
+        return MIGRATIONS;
+    }
+
+    /**
+     * Apply every migration newer than the recorded schema version
+     * @return Versions applied by this call
+     */
+    public List<Integer> migrate() throws Exception {
+        List<Integer> applied = new ArrayList<>();
+        try (Connection conn = db.getConnection()) {
+            ensureVersionTable(conn);
+            int current = getCurrentVersion(conn);
+            for (Migration m : MIGRATIONS) {
+                if (m.version <= current) {
+                    continue;
+                }
+                try (Statement st = conn.createStatement()) {
+                    for (Step step : m.steps) {
+                        try {
+                            st.execute(step.sql);
+                        } catch (SQLException e) {
+                            if (!step.alreadyApplied.contains(e.getErrorCode())) {
+                                throw new Exception("Migration " + m.version + " (" + m.description + ") failed: "
+                                        + e.getMessage(), e);
+                            }
+                        }
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO schema_version_KNBtbl(version, description) VALUES (?, ?)")) {
+                    ps.setInt(1, m.version);
+                    ps.setString(2, m.description);
+                    ps.executeUpdate();
+                }
+                applied.add(m.version);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Check that each expected index exists, matching on leading columns rather than name
+     * @return Descriptions of missing indexes; empty when everything is in place
+     */
+    public List<String> verifyIndexes() throws Exception {
+        List<String> present = new ArrayList<>();
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT table_name, LISTAGG(column_name, ',') WITHIN GROUP (ORDER BY column_position) " +
+                     "FROM user_ind_columns GROUP BY index_name, table_name");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                present.add(rs.getString(1) + ":" + rs.getString(2) + ",");
+            }
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (ExpectedIndex idx : EXPECTED_INDEXES) {
+            String prefix = idx.table + ":" + idx.columns + ",";
+            boolean found = false;
+            for (String p : present) {
+                if (p.startsWith(prefix)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                missing.add(idx.table + "(" + idx.columns + ") for " + idx.usedBy);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Run migrations and the index check, reporting problems without stopping startup
+     */
+    public void runAtStartup() {
+        try {
+            List<Integer> applied = migrate();
+            if (!applied.isEmpty()) {
+                System.out.println("Applied schema migrations: " + applied);
+            }
+            for (String missing : verifyIndexes()) {
+                System.err.println("WARNING: missing index on " + missing);
+            }
+        } catch (Exception e) {
+            System.err.println("Schema check failed: " + e.getMessage());
+        }
+    }
+
+    private void ensureVersionTable(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE schema_version_KNBtbl (version NUMBER PRIMARY KEY, " +
+                    "description VARCHAR2(200), applied_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        } catch (SQLException e) {
+            if (!ALREADY_APPLIED_ERRORS.contains(e.getErrorCode())) {
+                throw e;
+            }
+        }
+    }
+
+    private int getCurrentVersion(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT NVL(MAX(version), 0) FROM schema_version_KNBtbl");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
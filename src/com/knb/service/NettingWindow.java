@@ -0,0 +1,242 @@
+package com.knb.service;
+
+import com.knb.model.LedgerOp;
+import com.knb.model.TransferResult;
+import com.knb.repository.BankStorage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * NettingWindow settles bursts of transfers between the same two accounts together
+ * Transfers in either direction between a pair are held for a short window and
+ * then applied with one applyLedgerBatch call: every transfer is still checked in
+ * arrival order against the locked balances and keeps its own ledger rows, but each
+ * account's balance is written once, with the net of the window.
+ * Other operations are applied straight away.
+ */
+public class NettingWindow implements LedgerPipeline {
+    public static final String ENABLED_KEY = "netting.enabled";
+    public static final String WINDOW_KEY = "netting.window_ms";
+    public static final String MAX_TRANSFERS_KEY = "netting.max_transfers";
+    public static final int DEFAULT_WINDOW_MS = 20;
+    public static final int DEFAULT_MAX_TRANSFERS = 500;
+    private static final int SETTLE_THREADS = 4;
+
+    private final BankStorage db;
+    private final long windowMillis;
+    private final int maxTransfers;
+    private final Map<Long, Window> open = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor settler;
+    private volatile boolean running = true;
+
+    // Metrics
+    private final AtomicLong transfers = new AtomicLong();
+    private final AtomicLong settled = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong windows = new AtomicLong();
+    private final AtomicLong passedThrough = new AtomicLong();
+    private final AtomicLong updatesSaved = new AtomicLong();
+
+    /**
+     * Transfers between one account pair waiting to be settled
+     */
+    private static class Window {
+        final long pair;
+        final List<LedgerOp> ops = new ArrayList<>();
+        final List<CompletableFuture<TransferResult>> futures = new ArrayList<>();
+        boolean closed;
+
+        Window(long pair) {
+            this.pair = pair;
+        }
+    }
+
+    /**
+     * @param windowMillis How long the first transfer of a pair waits for others
+     * @param maxTransfers Transfers that close a window early
+     */
+    public NettingWindow(BankStorage db, long windowMillis, int maxTransfers) {
+        if (maxTransfers <= 0) {
+            throw new IllegalArgumentException("Max transfers must be positive");
+        }
+        this.db = db;
+        this.windowMillis = windowMillis;
+        this.maxTransfers = maxTransfers;
+        AtomicInteger threads = new AtomicInteger();
+        this.settler = new ScheduledThreadPoolExecutor(SETTLE_THREADS, r -> {
+            Thread t = new Thread(r, "knb-netting-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        settler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Hold a transfer in its pair's window, or apply any other operation now
+     * @return Future completed once the window holding the transfer has committed
+     */
+    @Override
+    public CompletableFuture<TransferResult> submit(LedgerOp op) throws Exception {
+        if (!running) {
+            throw new Exception("Netting is shut down");
+        }
+        if (!op.isTransfer()) {
+            passedThrough.incrementAndGet();
+            return CompletableFuture.completedFuture(db.applyLedgerBatch(Collections.singletonList(op)).get(0));
+        }
+
+        long pair = pairKey(op.getFromAcno(), op.getToAcno());
+        CompletableFuture<TransferResult> future = new CompletableFuture<>();
+        transfers.incrementAndGet();
+        while (true) {
+            Window window = open.computeIfAbsent(pair, this::openWindow);
+            synchronized (window) {
+                if (window.closed) {
+                    continue;
+                }
+                window.ops.add(op);
+                window.futures.add(future);
+                if (window.ops.size() >= maxTransfers) {
+                    close(window);
+                    settler.execute(() -> settle(window));
+                }
+                return future;
+            }
+        }
+    }
+
+    /**
+     * Settle every open window and stop the settlement threads
+     */
+    @Override
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        for (Window window : open.values()) {
+            flush(window);
+        }
+        settler.shutdown();
+        try {
+            settler.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Window openWindow(long pair) {
+        Window window = new Window(pair);
+        settler.schedule(() -> flush(window), windowMillis, TimeUnit.MILLISECONDS);
+        return window;
+    }
+
+    private void flush(Window window) {
+        synchronized (window) {
+            if (window.closed) {
+                return;
+            }
+            close(window);
+        }
+        settle(window);
+    }
+
+    /**
+     * Stop a window taking transfers; caller holds its monitor
+     */
+    private void close(Window window) {
+        window.closed = true;
+        open.remove(window.pair, window);
+    }
+
+    /**
+     * Apply a closed window in one transaction, falling back to one transfer at a time
+     * if it certainly rolled back; if it may have committed, the outcome is unknown
+     */
+    private void settle(Window window) {
+        windows.incrementAndGet();
+        try {
+            List<TransferResult> results = db.applyLedgerBatch(window.ops);
+            int succeeded = 0;
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).isSuccess()) succeeded++;
+                complete(window.futures.get(i), results.get(i));
+            }
+            // Two balance writes per transfer, against at most two for the whole window
+            if (succeeded > 1) updatesSaved.addAndGet(2L * (succeeded - 1));
+        } catch (Exception e) {
+            if (OutcomeUnknownException.isUnknown(e)) {
+                // Applying the transfers again could post each of them twice
+                Exception unknown = e instanceof OutcomeUnknownException ? e
+                        : new OutcomeUnknownException("Netting window commit failed; the window may have been saved", e);
+                failed.addAndGet(window.futures.size());
+                for (CompletableFuture<TransferResult> future : window.futures) {
+                    future.completeExceptionally(unknown);
+                }
+                return;
+            }
+            for (int i = 0; i < window.ops.size(); i++) {
+                try {
+                    complete(window.futures.get(i), db.applyLedgerBatch(Collections.singletonList(window.ops.get(i))).get(0));
+                } catch (Exception single) {
+                    failed.incrementAndGet();
+                    window.futures.get(i).completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private void complete(CompletableFuture<TransferResult> future, TransferResult result) {
+        (result.isSuccess() ? settled : rejected).incrementAndGet();
+        future.complete(result);
+    }
+
+    /**
+     * Same key for both directions between two accounts
+     */
+    private static long pairKey(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | (Math.max(a, b) & 0xFFFFFFFFL);
+    }
+
+    // ==================== METRICS ====================
+
+    public long getWindowMillis() { return windowMillis; }
+    public int getMaxTransfers() { return maxTransfers; }
+    public long getTransfers() { return transfers.get(); }
+    public long getSettled() { return settled.get(); }
+    public long getRejected() { return rejected.get(); }
+    public long getFailed() { return failed.get(); }
+    public long getWindows() { return windows.get(); }
+    public long getPassedThrough() { return passedThrough.get(); }
+    public int getOpenWindows() { return open.size(); }
+
+    /**
+     * Transfers settled per window; 1.0 means no netting happened
+     */
+    public double getNettingRatio() {
+        long w = windows.get();
+        return w == 0 ? 0 : (double) (settled.get() + rejected.get() + failed.get()) / w;
+    }
+
+    /**
+     * Balance updates avoided compared with writing both accounts for every transfer
+     */
+    public long getBalanceUpdatesSaved() {
+        return updatesSaved.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("NettingWindow[window=%d ms, max=%d: transfers=%d, settled=%d, rejected=%d, failed=%d, " +
+                        "windows=%d, ratio=%.1f, updatesSaved=%d, open=%d]",
+                windowMillis, maxTransfers, getTransfers(), getSettled(), getRejected(), getFailed(),
+                getWindows(), getNettingRatio(), getBalanceUpdatesSaved(), getOpenWindows());
+    }
+}
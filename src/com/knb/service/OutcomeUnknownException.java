@@ -0,0 +1,35 @@
+package com.knb.service;
+
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Thrown when a money movement failed part way and may still take effect
+ * The caller must not treat it as a failure to retry: the idempotency key stays
+ * held, and the account statement shows whether the money moved.
+ */
+public class OutcomeUnknownException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public OutcomeUnknownException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Whether a failure leaves it unknown if the database committed the work
+     * A lost connection or a timeout may come after the server committed; other
+     * errors are raised before commit and the work was rolled back.
+     */
+    public static boolean isUnknown(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof OutcomeUnknownException || t instanceof SQLRecoverableException
+                    || t instanceof SQLTimeoutException || t instanceof SQLTransientConnectionException
+                    || t instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,176 @@
+package com.knb.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ReadThroughCache keeps recently loaded lookups in memory
+ * Bounded by size (oldest entries evicted first) and by a time-to-live
+ */
+public class ReadThroughCache<K, V> {
+
+    /**
+     * Loads a value on a cache miss
+     */
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        V load(K key) throws Exception;
+    }
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry<K, V>> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    // Bumped on every invalidation so a load that raced with a write is not cached
+    private final AtomicLong invalidationStamp = new AtomicLong();
+
+    // Statistics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ReadThroughCache(String name, int maxSize, long ttlMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Return the cached value, or load and cache it on a miss
+     * Null results are returned but not cached.
+     */
+    public V get(K key, Loader<K, V> loader) throws Exception {
+        Entry<K, V> entry = entries.get(key);
+        if (entry != null) {
+            if (entry.expiresAt > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+            if (remove(entry)) {
+                expirations.incrementAndGet();
+            }
+        }
+
+        misses.incrementAndGet();
+        long stamp = invalidationStamp.get();
+        V value = loader.load(key);
+        if (value != null && stamp == invalidationStamp.get()) {
+            Entry<K, V> cached = put(key, value);
+            // An invalidation between the check and the put found nothing to remove; undo the put
+            if (stamp != invalidationStamp.get() && remove(cached)) {
+                invalidations.incrementAndGet();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Drop a key after the underlying row has changed
+     */
+    public void invalidate(K key) {
+        invalidationStamp.incrementAndGet();
+        Entry<K, V> entry = entries.get(key);
+        if (entry != null && remove(entry)) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drop every entry
+     */
+    public void clear() {
+        invalidationStamp.incrementAndGet();
+        for (Entry<K, V> entry : entries.values()) {
+            if (remove(entry)) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    private Entry<K, V> put(K key, V value) {
+        Entry<K, V> entry = new Entry<>(key, value, System.currentTimeMillis() + ttlMillis);
+        Entry<K, V> previous = entries.put(key, entry);
+        if (previous == null) {
+            size.incrementAndGet();
+        }
+        insertionOrder.offer(entry);
+        queued.incrementAndGet();
+
+        // Evict oldest live entries past the size bound, and drain queue slots left
+        // behind by replaced, expired or invalidated entries
+        while (size.get() > maxSize || queued.get() > maxSize * 2) {
+            Entry<K, V> oldest = insertionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            queued.decrementAndGet();
+            if (entries.get(oldest.key) != oldest) {
+                continue;
+            }
+            if (size.get() > maxSize) {
+                if (remove(oldest)) {
+                    evictions.incrementAndGet();
+                }
+            } else {
+                insertionOrder.offer(oldest);
+                queued.incrementAndGet();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Remove the entry only if it is still the live mapping for its key
+     */
+    private boolean remove(Entry<K, V> entry) {
+        if (entries.remove(entry.key, entry)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private static class Entry<K, V> {
+        final K key;
+        final V value;
+        final long expiresAt;
+
+        Entry(K key, V value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // ==================== STATISTICS ====================
+
+    public int size() { return size.get(); }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+    public long getExpirations() { return expirations.get(); }
+    public long getInvalidations() { return invalidations.get(); }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Cache[%s: size=%d/%d, hits=%d, misses=%d, hitRatio=%.1f%%, evictions=%d, expirations=%d, invalidations=%d]",
+                name, size(), maxSize, getHits(), getMisses(), getHitRatio() * 100,
+                getEvictions(), getExpirations(), getInvalidations());
+    }
+}
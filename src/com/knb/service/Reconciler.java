@@ -0,0 +1,231 @@
+package com.knb.service;
+
+import com.knb.model.AccountReconciliation;
+import com.knb.model.Money;
+import com.knb.repository.BankStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reconciler checks every stored balance against the ledger at end of day
+ * The account number range is cut into chunks reconciled in parallel. For each
+ * chunk the database aggregates the hot and archived ledger per account in one
+ * streamed query, so memory stays bounded by the mismatches of the chunks in flight
+ * however many ledger rows there are.
+ *
+ * An account whose balance disagrees is read again on its own before it is
+ * reported, so a money movement caught half way through is not flagged. Confirmed
+ * mismatches are written to recon_mismatches_KNBtbl under the run id (the date).
+ *
+ * The ledger is counted from the latest balance snapshot, so run this before the
+ * nightly BalanceSnapshotter: a snapshot taken from a drifted balance carries the drift.
+ */
+public class Reconciler {
+    public static final String CHUNK_SIZE_KEY = "recon.chunk_size";
+    public static final String PARALLELISM_KEY = "recon.parallelism";
+    public static final int DEFAULT_CHUNK_SIZE = 50_000;
+    private static final long PROGRESS_INTERVAL_SECONDS = 5;
+    private static final int MISMATCHES_SHOWN = 20;
+
+    private final BankStorage db;
+    private final int chunkSize;
+    private final int parallelism;
+
+    // Progress
+    private volatile long startedNanos;
+    private final AtomicLong chunksTotal = new AtomicLong();
+    private final AtomicLong chunksDone = new AtomicLong();
+    private final AtomicLong chunksFailed = new AtomicLong();
+    private final AtomicLong accounts = new AtomicLong();
+    private final AtomicLong ledgerRows = new AtomicLong();
+    private final AtomicLong unanchored = new AtomicLong();
+    private final AtomicLong mismatches = new AtomicLong();
+    private final AtomicLong cleared = new AtomicLong();
+    private final AtomicLong netDifference = new AtomicLong();
+
+    /**
+     * @param chunkSize Account numbers covered by one chunk
+     * @param parallelism Chunks reconciled at once
+     */
+    public Reconciler(BankStorage db, int chunkSize, int parallelism) {
+        if (chunkSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("Chunk size and parallelism must be positive");
+        }
+        this.db = db;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Create a reconciler from recon.chunk_size and recon.parallelism
+     */
+    public static Reconciler fromConfig(BankStorage db) throws Exception {
+        return new Reconciler(db,
+                db.getConfigInt(CHUNK_SIZE_KEY, DEFAULT_CHUNK_SIZE),
+                db.getConfigInt(PARALLELISM_KEY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Reconcile every account and record the mismatches under runId
+     * @return Number of confirmed mismatches; progress counters start again from zero
+     * @throws Exception if any chunk could not be read; the other chunks are still reported
+     */
+    public long reconcile(String runId) throws Exception {
+        for (AtomicLong counter : new AtomicLong[]{chunksTotal, chunksDone, chunksFailed, accounts, ledgerRows,
+                unanchored, mismatches, cleared, netDifference}) {
+            counter.set(0);
+        }
+        int[] range = db.getAccountRange(null);
+        if (range == null) {
+            return 0;
+        }
+
+        List<Callable<Void>> chunks = new ArrayList<>();
+        for (long from = Math.floorDiv(range[0], chunkSize) * (long) chunkSize; from <= range[1]; from += chunkSize) {
+            int start = (int) from;
+            int end = (int) Math.min(from + chunkSize, Integer.MAX_VALUE);
+            chunks.add(() -> {
+                reconcileChunk(runId, start, end);
+                return null;
+            });
+        }
+        chunksTotal.set(chunks.size());
+
+        startedNanos = System.nanoTime();
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "knb-recon-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            workers.invokeAll(chunks);
+        } finally {
+            workers.shutdown();
+        }
+        if (chunksFailed.get() > 0) {
+            throw new Exception(chunksFailed.get() + " reconciliation chunks failed for " + runId);
+        }
+        return mismatches.get();
+    }
+
+    private void reconcileChunk(String runId, int fromAcno, int toAcno) {
+        try {
+            List<AccountReconciliation> suspects = new ArrayList<>();
+            db.forEachReconciliation(fromAcno, toAcno, r -> {
+                accounts.incrementAndGet();
+                ledgerRows.addAndGet(r.getLedgerRows());
+                if (!r.isAnchored()) {
+                    unanchored.incrementAndGet();
+                } else if (!r.isBalanced()) {
+                    suspects.add(r);
+                }
+            });
+
+            List<AccountReconciliation> confirmed = new ArrayList<>();
+            for (AccountReconciliation suspect : suspects) {
+                List<AccountReconciliation> again = new ArrayList<>(1);
+                db.forEachReconciliation(suspect.getAcno(), suspect.getAcno() + 1, again::add);
+                if (!again.isEmpty() && !again.get(0).isBalanced()) {
+                    confirmed.add(again.get(0));
+                    netDifference.addAndGet(again.get(0).getDifference());
+                } else {
+                    cleared.incrementAndGet();
+                }
+            }
+            db.saveMismatches(runId, confirmed);
+            mismatches.addAndGet(confirmed.size());
+            chunksDone.incrementAndGet();
+        } catch (Exception e) {
+            chunksFailed.incrementAndGet();
+            System.err.println("Reconciliation chunk " + fromAcno + "-" + toAcno + " failed: " + e.getMessage());
+        }
+    }
+
+    // ==================== PROGRESS ====================
+
+    public int getChunkSize() { return chunkSize; }
+    public long getChunksTotal() { return chunksTotal.get(); }
+    public long getChunksDone() { return chunksDone.get(); }
+    public long getChunksFailed() { return chunksFailed.get(); }
+    public long getAccountsChecked() { return accounts.get(); }
+    public long getLedgerRows() { return ledgerRows.get(); }
+    public long getMismatches() { return mismatches.get(); }
+
+    /**
+     * Accounts with neither a snapshot nor a recorded running balance, which cannot be checked
+     */
+    public long getUnanchored() { return unanchored.get(); }
+
+    /**
+     * Accounts that disagreed on the first read but balanced when read again
+     */
+    public long getCleared() { return cleared.get(); }
+
+    /**
+     * Sum of stored less ledger balance over the confirmed mismatches, in paise
+     */
+    public long getNetDifference() { return netDifference.get(); }
+
+    public double getPercentComplete() {
+        long total = chunksTotal.get();
+        return total == 0 ? 0 : 100.0 * (chunksDone.get() + chunksFailed.get()) / total;
+    }
+
+    /**
+     * Ledger rows aggregated per second since the run started
+     */
+    public double getRowsPerSecond() {
+        long elapsed = System.nanoTime() - startedNanos;
+        return startedNanos == 0 || elapsed == 0 ? 0 : ledgerRows.get() * 1_000_000_000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Reconciler[chunk=%d: %.1f%% of %d chunks, failed=%d, accounts=%d, rows=%d, " +
+                        "mismatches=%d, cleared=%d, unanchored=%d, net=₹%s, %.0f rows/s]",
+                chunkSize, getPercentComplete(), getChunksTotal(), getChunksFailed(), getAccountsChecked(),
+                getLedgerRows(), getMismatches(), getCleared(), getUnanchored(), Money.format(getNetDifference()),
+                getRowsPerSecond());
+    }
+
+    /**
+     * Reconcile all accounts under today's date, or the run id given, reporting progress as it goes
+     */
+    public static void main(String[] args) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "knb-recon-progress");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            String runId = args.length > 0 ? args[0] : LocalDate.now().toString();
+            DatabaseManager db = new DatabaseManager();
+            Reconciler reconciler = fromConfig(db);
+            reporter.scheduleAtFixedRate(() -> System.out.println(reconciler),
+                    PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            long found = reconciler.reconcile(runId);
+            System.out.println(reconciler);
+            System.out.println("Reconciliation " + runId + " complete: " + found + " mismatched accounts");
+            List<AccountReconciliation> report = db.getMismatches(runId);
+            for (AccountReconciliation r : report.subList(0, Math.min(MISMATCHES_SHOWN, report.size()))) {
+                System.out.println("  " + r + " difference ₹" + Money.format(r.getDifference()));
+            }
+        } catch (Exception e) {
+            System.err.println("Reconciliation failed: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            reporter.shutdownNow();
+            DatabaseManager.shutdown();
+        }
+    }
+}
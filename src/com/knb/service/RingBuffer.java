@@ -0,0 +1,78 @@
+package com.knb.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RingBuffer is a bounded multi-producer, single-consumer queue over a preallocated array
+ * Producers claim a sequence with one atomic increment and publish by stamping
+ * the slot; the consumer drains published slots in order without locking.
+ */
+class RingBuffer<T> {
+    private static final long WAIT_NANOS = 1_000;
+
+    private final Object[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+
+    RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new Object[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Publish an item, waiting while the buffer is full
+     */
+    void put(T item) {
+        long seq = claimed.getAndIncrement();
+        while (seq - consumed >= slots.length) {
+            LockSupport.parkNanos(WAIT_NANOS);
+        }
+        int slot = (int) (seq & mask);
+        slots[slot] = item;
+        published.set(slot, seq);
+    }
+
+    /**
+     * Move up to max published items into out, in publication order; consumer thread only
+     * @return Number of items moved
+     */
+    @SuppressWarnings("unchecked")
+    int drainTo(List<T> out, int max) {
+        long next = consumed;
+        int count = 0;
+        while (count < max) {
+            int slot = (int) (next & mask);
+            if (published.get(slot) != next) {
+                break;
+            }
+            out.add((T) slots[slot]);
+            slots[slot] = null;
+            next++;
+            count++;
+        }
+        consumed = next;
+        return count;
+    }
+
+    boolean isEmpty() {
+        return claimed.get() == consumed;
+    }
+
+    int size() {
+        return (int) (claimed.get() - consumed);
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,296 @@
+package com.knb.service;
+
+import com.knb.model.StandingInstruction;
+import com.knb.repository.BankStorage;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StandingInstructionScheduler pays standing instructions when they fall due
+ * Instructions due within the next half hour are loaded into an in-memory timing
+ * wheel with one indexed range query, refreshed every few minutes, so the table is
+ * never polled per second. A timer thread sleeps until the earliest due slot, then
+ * hands what expired to a worker pool in batches ordered by account number.
+ *
+ * Each batch is one runInstructions call: one transaction that locks the
+ * instructions, debits every account and moves each instruction to its next run.
+ * An instruction whose next run changed since it was loaded is skipped, so a run
+ * is paid at most once even if it was queued twice or another scheduler got there first.
+ */
+public class StandingInstructionScheduler {
+    public static final String WORKERS_KEY = "standing.workers";
+    public static final String BATCH_SIZE_KEY = "standing.batch_size";
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long TICK_MILLIS = 1_000;
+    private static final int SLOTS = 3_600;
+    private static final long LOAD_AHEAD_MILLIS = 30 * 60_000;
+    private static final long LOAD_INTERVAL_MILLIS = 5 * 60_000;
+    private static final long RETRY_MILLIS = 10_000;
+
+    private final BankStorage db;
+    private final int batchSize;
+    private final ExecutorService workers;
+    private final TimingWheel<StandingInstruction> wheel;
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private final Thread timer;
+    private volatile boolean running;
+    private volatile long loadedUntil;
+
+    // Metrics
+    private volatile long startedNanos;
+    private final AtomicLong paid = new AtomicLong();
+    private final AtomicLong insufficient = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    /**
+     * @param workers Batches run at once
+     * @param batchSize Most instructions paid in one transaction
+     */
+    public StandingInstructionScheduler(BankStorage db, int workers, int batchSize) {
+        if (workers <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Workers and batch size must be positive");
+        }
+        this.db = db;
+        this.batchSize = batchSize;
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "knb-standing-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.wheel = new TimingWheel<>(SLOTS, TICK_MILLIS, System.currentTimeMillis());
+        this.timer = new Thread(this::run, "knb-standing-timer");
+        timer.setDaemon(true);
+    }
+
+    /**
+     * Create a scheduler sized from standing.workers and standing.batch_size
+     */
+    public static StandingInstructionScheduler fromConfig(BankStorage db) throws Exception {
+        return new StandingInstructionScheduler(db,
+                db.getConfigInt(WORKERS_KEY, Runtime.getRuntime().availableProcessors() * 2),
+                db.getConfigInt(BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE));
+    }
+
+    /**
+     * Start loading and paying instructions
+     */
+    public synchronized void start() throws Exception {
+        if (db.getConfigBoolean(LedgerEngine.ENABLED_KEY, false)) {
+            // The engine, in whatever process runs it, owns the balances in memory;
+            // direct debits would go behind its back
+            throw new Exception("Standing instructions cannot run alongside the ledger engine");
+        }
+        if (running) {
+            return;
+        }
+        running = true;
+        startedNanos = System.nanoTime();
+        timer.start();
+    }
+
+    /**
+     * Queue an instruction created after the last load, if it falls due before the next one
+     */
+    public void schedule(StandingInstruction si) {
+        if (si.isActive() && si.getNextRun().getTime() < loadedUntil && queued.add(si.getId())) {
+            enqueue(si, si.getNextRun().getTime());
+        }
+    }
+
+    /**
+     * Stop the timer and wait for batches already handed to the workers
+     */
+    public void shutdown(long timeoutMillis) {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        try {
+            timer.join(timeoutMillis);
+            workers.shutdown();
+            workers.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long nextLoad = 0;
+        while (running) {
+            long now = System.currentTimeMillis();
+            try {
+                if (now >= nextLoad) {
+                    load(now);
+                    nextLoad = now + LOAD_INTERVAL_MILLIS;
+                }
+            } catch (Exception e) {
+                System.err.println("Loading standing instructions failed: " + e.getMessage());
+                nextLoad = now + RETRY_MILLIS;
+            }
+            List<StandingInstruction> due;
+            synchronized (this) {
+                due = wheel.advance(now);
+            }
+            dispatch(due, now);
+            synchronized (this) {
+                long next = wheel.nextDueMillis();
+                long wake = next < 0 ? nextLoad : Math.min(next, nextLoad);
+                long wait = wake - System.currentTimeMillis();
+                if (running && wait > 0) {
+                    try {
+                        wait(wait);
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Queue every active instruction due before now plus the load-ahead window
+     * Instructions already queued or in flight are left alone.
+     */
+    private void load(long now) throws Exception {
+        long until = now + LOAD_AHEAD_MILLIS;
+        db.forEachInstructionDue(null, new Timestamp(until), si -> {
+            if (queued.add(si.getId())) {
+                enqueue(si, si.getNextRun().getTime());
+            }
+        });
+        loadedUntil = until;
+        loads.incrementAndGet();
+    }
+
+    private synchronized void enqueue(StandingInstruction si, long dueMillis) {
+        wheel.schedule(si, dueMillis);
+        notifyAll();
+    }
+
+    /**
+     * Split expired instructions into account-ordered batches for the workers
+     * Neighbouring accounts share a batch, so concurrent batches rarely touch the same rows.
+     */
+    private void dispatch(List<StandingInstruction> due, long now) {
+        if (due.isEmpty()) {
+            return;
+        }
+        due.sort(Comparator.comparingInt(StandingInstruction::getAcno));
+        long lag = 0;
+        for (StandingInstruction si : due) {
+            lag = Math.max(lag, now - si.getNextRun().getTime());
+        }
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+        for (int i = 0; i < due.size(); i += batchSize) {
+            List<StandingInstruction> batch = new ArrayList<>(due.subList(i, Math.min(i + batchSize, due.size())));
+            workers.execute(() -> runBatch(batch));
+        }
+    }
+
+    private void runBatch(List<StandingInstruction> batch) {
+        List<StandingInstruction> results;
+        try {
+            results = db.runInstructions(batch);
+        } catch (Exception e) {
+            // Nothing in the batch was paid; try it again shortly
+            failedBatches.incrementAndGet();
+            long retryAt = System.currentTimeMillis() + RETRY_MILLIS;
+            for (StandingInstruction si : batch) {
+                enqueue(si, retryAt);
+            }
+            return;
+        }
+        batches.incrementAndGet();
+        for (StandingInstruction si : results) {
+            switch (si.getLastResult()) {
+                case PAID: paid.incrementAndGet(); break;
+                case INSUFFICIENT_FUNDS: insufficient.incrementAndGet(); break;
+                case ACCOUNT_NOT_FOUND: failed.incrementAndGet(); break;
+                default: skipped.incrementAndGet(); break;
+            }
+            boolean again = si.getLastResult() != StandingInstruction.Result.SKIPPED
+                    && si.isActive() && si.getNextRun().getTime() < loadedUntil;
+            if (again) {
+                enqueue(si, si.getNextRun().getTime());
+            } else {
+                queued.remove(si.getId());
+            }
+        }
+    }
+
+    // ==================== METRICS ====================
+
+    public int getBatchSize() { return batchSize; }
+    public long getPaid() { return paid.get(); }
+    public long getInsufficientFunds() { return insufficient.get(); }
+    public long getFailed() { return failed.get(); }
+    public long getSkipped() { return skipped.get(); }
+    public long getBatches() { return batches.get(); }
+    public long getFailedBatches() { return failedBatches.get(); }
+    public long getLoads() { return loads.get(); }
+
+    /**
+     * Longest an instruction waited past its due time before being handed to a worker
+     */
+    public long getMaxLagMillis() { return maxLagMillis.get(); }
+
+    public synchronized int getScheduled() {
+        return wheel.size();
+    }
+
+    /**
+     * Instructions processed per second since the scheduler started
+     */
+    public double getTransactionsPerSecond() {
+        long elapsed = System.nanoTime() - startedNanos;
+        long done = paid.get() + insufficient.get() + failed.get();
+        return startedNanos == 0 || elapsed == 0 ? 0 : done * 1_000_000_000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StandingInstructionScheduler[batch<=%d: scheduled=%d, paid=%d, insufficient=%d, " +
+                        "failed=%d, skipped=%d, batches=%d, failedBatches=%d, maxLag=%d ms, tps=%.0f]",
+                batchSize, getScheduled(), getPaid(), getInsufficientFunds(), getFailed(), getSkipped(),
+                getBatches(), getFailedBatches(), getMaxLagMillis(), getTransactionsPerSecond());
+    }
+
+    /**
+     * Run the scheduler until the process is stopped
+     */
+    public static void main(String[] args) {
+        try {
+            StandingInstructionScheduler scheduler = fromConfig(new DatabaseManager());
+            scheduler.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                scheduler.shutdown(10_000);
+                System.out.println(scheduler);
+                DatabaseManager.shutdown();
+            }));
+            System.out.println("Standing instruction scheduler started");
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Standing instruction scheduler failed: " + e.getMessage());
+            e.printStackTrace();
+            DatabaseManager.shutdown();
+        }
+    }
+}
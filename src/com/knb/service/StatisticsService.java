@@ -0,0 +1,98 @@
+package com.knb.service;
+
+import com.knb.model.SystemStats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * StatisticsService answers dashboard counts without scanning the base tables
+ * Counts are kept in stats_counters_KNBtbl by row triggers, spread over
+ * COUNTER_SLOTS rows per counter so concurrent inserts do not queue on one row
+ */
+public class StatisticsService {
+    public static final int COUNTER_SLOTS = 16;
+
+    private static final String COUNTERS_SQL =
+            "SELECT NVL(SUM(CASE WHEN counter_name = 'USERS' THEN value END), 0), " +
+            "       NVL(SUM(CASE WHEN counter_name = 'ACCOUNTS' THEN value END), 0), " +
+            "       NVL(SUM(CASE WHEN counter_name = 'TRANSACTIONS' THEN value END), 0), " +
+            "       NVL(SUM(CASE WHEN counter_name = 'PENDING_USERS' THEN value END), 0) " +
+            "FROM stats_counters_KNBtbl";
+
+    private static final String EXACT_SQL =
+            "SELECT (SELECT COUNT(*) FROM users_KNBtbl), " +
+            "       (SELECT COUNT(*) FROM accounts_KNBtbl), " +
+            "       (SELECT COUNT(*) FROM transactions_KNBtbl), " +
+            "       (SELECT COUNT(*) FROM users_KNBtbl WHERE status = 'PENDING') " +
+            "FROM dual";
+
+    private final DatabaseManager db;
+
+    public StatisticsService(DatabaseManager db) {
+        this.db = db;
+    }
+
+    /**
+     * Get all dashboard counts from the maintained counters in one round trip
+     * Cost is constant regardless of table sizes.
+     */
+    public SystemStats getStats() throws Exception {
+        return query(COUNTERS_SQL);
+    }
+
+    /**
+     * Get all dashboard counts by counting the base tables in one aggregate query
+     * Exact even if the counters have drifted, but cost grows with the tables.
+     */
+    public SystemStats getExactStats() throws Exception {
+        return query(EXACT_SQL);
+    }
+
+    /**
+     * Reset the counters from the base tables, e.g. after bulk loads with triggers disabled
+     * Runs in one transaction so readers never see a half-rebuilt set.
+     */
+    public SystemStats rebuildCounters() throws Exception {
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement st = conn.createStatement()) {
+                st.execute("LOCK TABLE stats_counters_KNBtbl IN EXCLUSIVE MODE");
+                st.executeUpdate("UPDATE stats_counters_KNBtbl SET value = 0");
+            }
+            SystemStats exact;
+            try (PreparedStatement ps = conn.prepareStatement(EXACT_SQL);
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                exact = new SystemStats(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4));
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE stats_counters_KNBtbl SET value = ? WHERE counter_name = ? AND slot = 0")) {
+                setCounter(ps, "USERS", exact.getUserCount());
+                setCounter(ps, "ACCOUNTS", exact.getAccountCount());
+                setCounter(ps, "TRANSACTIONS", exact.getTransactionCount());
+                setCounter(ps, "PENDING_USERS", exact.getPendingUserCount());
+                ps.executeBatch();
+            }
+            conn.commit();
+            return exact;
+        }
+    }
+
+    private void setCounter(PreparedStatement ps, String name, long value) throws Exception {
+        ps.setLong(1, value);
+        ps.setString(2, name);
+        ps.addBatch();
+    }
+
+    private SystemStats query(String sql) throws Exception {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return new SystemStats(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4));
+        }
+    }
+}
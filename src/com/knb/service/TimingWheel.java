@@ -0,0 +1,97 @@
+package com.knb.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TimingWheel buckets items by due time into a fixed ring of one-tick slots
+ * Scheduling and expiry cost O(1) per item regardless of how many are waiting,
+ * so a million payments due at midnight need no sorted queue and no polling.
+ * Items are held for at most one revolution ahead. Not thread-safe; callers lock.
+ */
+class TimingWheel<T> {
+    private final List<List<T>> slots;
+    private final long tickMillis;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param slots Ticks in one revolution; slots * tickMillis is the scheduling horizon
+     * @param startMillis Time the wheel starts expiring from
+     */
+    TimingWheel(int slots, long tickMillis, long startMillis) {
+        if (slots <= 0 || tickMillis <= 0) {
+            throw new IllegalArgumentException("Slots and tick must be positive");
+        }
+        this.slots = new ArrayList<>(slots);
+        for (int i = 0; i < slots; i++) {
+            this.slots.add(new ArrayList<>());
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Add an item to the slot of the first tick at or after its due time
+     * Overdue items go in the current slot and expire on the next advance.
+     * @return false if the item is due beyond the horizon and was not added
+     */
+    boolean schedule(T item, long dueMillis) {
+        long tick = Math.max(Math.floorDiv(dueMillis + tickMillis - 1, tickMillis), currentTick);
+        if (tick - currentTick >= slots.size()) {
+            return false;
+        }
+        slots.get(slot(tick)).add(item);
+        size++;
+        return true;
+    }
+
+    /**
+     * Expire every slot whose tick has been reached
+     * @return Items now due, earliest slot first
+     */
+    List<T> advance(long nowMillis) {
+        List<T> due = new ArrayList<>();
+        long nowTick = Math.floorDiv(nowMillis, tickMillis);
+        long ticks = Math.min(nowTick - currentTick + 1, slots.size());
+        for (long i = 0; i < ticks; i++) {
+            List<T> slot = slots.get(slot(currentTick + i));
+            if (!slot.isEmpty()) {
+                due.addAll(slot);
+                slot.clear();
+            }
+        }
+        if (nowTick >= currentTick) {
+            currentTick = nowTick + 1;
+        }
+        size -= due.size();
+        return due;
+    }
+
+    /**
+     * Time at which the earliest occupied slot expires, or -1 if the wheel is empty
+     */
+    long nextDueMillis() {
+        if (size == 0) {
+            return -1;
+        }
+        for (long tick = currentTick; tick < currentTick + slots.size(); tick++) {
+            if (!slots.get(slot(tick)).isEmpty()) {
+                return tick * tickMillis;
+            }
+        }
+        return -1;
+    }
+
+    long horizonMillis() {
+        return slots.size() * tickMillis;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(long tick) {
+        return (int) Math.floorMod(tick, (long) slots.size());
+    }
+}
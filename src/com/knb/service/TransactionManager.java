@@ -1,108 +1,427 @@
 package com.knb.service;
 
 import com.knb.model.Account;
+import com.knb.model.IdempotencyRecord;
+import com.knb.model.LedgerOp;
+import com.knb.model.MultiTransferResult;
+import com.knb.model.StandingInstruction;
+import com.knb.model.TransferLeg;
+import com.knb.model.TransferResult;
+import com.knb.repository.BankStorage;
+
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * TransactionManager handles all financial transactions
  * Provides secure and reliable transaction processing
  */
 public class TransactionManager {
-    private final DatabaseManager db;
+    public static final String TRANSFER_LIMIT_KEY = "transfer.max_amount";
+
+    // Shared by every TransactionManager so all sessions in this process see the same locks
+    private static final AccountLocks accountLocks = AccountLocks.forAvailableProcessors();
+
+    // Recently completed idempotency keys, so most retries never reach the database
+    private static final int IDEMPOTENCY_CACHE_SIZE = 50_000;
+    private static final long IDEMPOTENCY_CACHE_TTL_MS = 60 * 60 * 1000L;
+    public static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+
+    private static final ReadThroughCache<String, IdempotencyRecord> recentRequests =
+            new ReadThroughCache<>("idempotency", IDEMPOTENCY_CACHE_SIZE, IDEMPOTENCY_CACHE_TTL_MS);
+
+    private static final long PIPELINE_SHUTDOWN_TIMEOUT_MS = 5 * 1000L;
+    private static LedgerPipeline sharedPipeline;
+
+    private final BankStorage db;
+    private final LedgerPipeline pipeline;
+
+    public TransactionManager(BankStorage db) {
+        this(db, null);
+    }
 
-    public TransactionManager(DatabaseManager db) {
+    /**
+     * @param pipeline Group committer, ledger engine or netting window to route money movements through,
+     *                 or null to commit each on its own
+     */
+    public TransactionManager(BankStorage db, LedgerPipeline pipeline) {
         this.db = db;
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Create a manager for db: through the ledger engine when ledger.engine.enabled is true,
+     * in group-commit mode when group_commit.enabled is true, netting transfers between
+     * the same accounts when netting.enabled is true, otherwise committing directly
+     * All managers in the process share one pipeline.
+     */
+    public static TransactionManager create(BankStorage db) throws Exception {
+        // Read the sizing before locking; shutdown takes the storage lock and then this one
+        Callable<LedgerPipeline> factory;
+        if (db.getConfigBoolean(LedgerEngine.ENABLED_KEY, false)) {
+            String journalPath = Objects.requireNonNullElse(
+                    db.getConfigValue(LedgerEngine.JOURNAL_PATH_KEY), LedgerEngine.DEFAULT_JOURNAL_PATH);
+            String journalId = Objects.requireNonNullElse(
+                    db.getConfigValue(LedgerEngine.JOURNAL_ID_KEY), LedgerEngine.DEFAULT_JOURNAL_ID);
+            int batchSize = db.getConfigInt(LedgerEngine.BATCH_SIZE_KEY, LedgerEngine.DEFAULT_BATCH_SIZE);
+            factory = () -> new LedgerEngine(db, Paths.get(journalPath), journalId, batchSize);
+        } else if (db.getConfigBoolean(GroupCommitter.ENABLED_KEY, false)) {
+            int batchSize = db.getConfigInt(GroupCommitter.BATCH_SIZE_KEY, GroupCommitter.DEFAULT_BATCH_SIZE);
+            int maxWait = db.getConfigInt(GroupCommitter.MAX_WAIT_KEY, GroupCommitter.DEFAULT_MAX_WAIT_MS);
+            factory = () -> new GroupCommitter(db, batchSize, maxWait);
+        } else if (db.getConfigBoolean(NettingWindow.ENABLED_KEY, false)) {
+            int window = db.getConfigInt(NettingWindow.WINDOW_KEY, NettingWindow.DEFAULT_WINDOW_MS);
+            int maxTransfers = db.getConfigInt(NettingWindow.MAX_TRANSFERS_KEY, NettingWindow.DEFAULT_MAX_TRANSFERS);
+            factory = () -> new NettingWindow(db, window, maxTransfers);
+        } else {
+            return new TransactionManager(db);
+        }
+        synchronized (TransactionManager.class) {
+            if (sharedPipeline == null) {
+                sharedPipeline = factory.call();
+            }
+            return new TransactionManager(db, sharedPipeline);
+        }
+    }
+
+    /**
+     * Get the shared pipeline, or null if every manager commits directly
+     */
+    public static synchronized LedgerPipeline getPipeline() {
+        return sharedPipeline;
+    }
+
+    /**
+     * Finish everything still queued in the shared pipeline and stop it
+     * The pipeline is stopped outside the class lock, as its worker may still need it to commit.
+     */
+    public static void shutdownPipeline() {
+        LedgerPipeline p = getPipeline();
+        if (p != null) {
+            p.shutdown(PIPELINE_SHUTDOWN_TIMEOUT_MS);
+        }
+    }
+
+    /**
+     * Get the per-account locks, e.g. to report contention
+     */
+    public static AccountLocks getAccountLocks() {
+        return accountLocks;
+    }
+
+    /**
+     * Get hit/miss statistics for the idempotency key cache
+     */
+    public static String getIdempotencyStats() {
+        return recentRequests.toString();
     }
 
     /**
      * Transfer funds between accounts
      * @param from Source account
      * @param to Destination account
-     * @param amount Amount to transfer
+     * @param amount Amount to transfer, in paise
      * @return true if transfer successful, false otherwise
      */
-    public boolean transferFunds(Account from, Account to, double amount) throws Exception {
+    public boolean transferFunds(Account from, Account to, long amount) throws Exception {
+        return transferFunds(from, to, amount, null);
+    }
+
+    /**
+     * Transfer funds at most once per idempotency key
+     * A retry with the same key returns the first outcome without moving money again.
+     * @param idempotencyKey Client-supplied request key, or null for no deduplication
+     */
+    public boolean transferFunds(Account from, Account to, long amount, String idempotencyKey) throws Exception {
+        return once(idempotencyKey, "TRANSFER_TO_" + to.getAcno(), from.getAcno(), amount,
+                () -> doTransfer(from, to, amount));
+    }
+
+    private boolean doTransfer(Account from, Account to, long amount) throws Exception {
         // Validation checks
         if (amount <= 0) {
             return false;
         }
-        
-        if (from.getBalance() < amount) {
+
+        if (from.getAcno() == to.getAcno()) {
             return false;
         }
-        
-        if (from.getAcno() == to.getAcno()) {
+
+        // Per-transfer limit, read from the config snapshot (0 means unlimited)
+        long limit = db.getConfigMoney(TRANSFER_LIMIT_KEY, 0);
+        if (limit > 0 && amount > limit) {
+            return false;
+        }
+
+        // Balance check happens in the database against the committed balance,
+        // not the possibly stale in-memory copy. The account locks keep transfers
+        // on the same accounts from queueing on each other's row locks.
+        TransferResult result;
+        if (pipeline != null) {
+            result = await(pipeline.submit(LedgerOp.transfer(from.getAcno(), to.getAcno(), amount)));
+        } else {
+            AccountLocks.Held held = accountLocks.lock(from.getAcno(), to.getAcno());
+            try {
+                result = db.transferFunds(from.getAcno(), to.getAcno(), amount);
+            } finally {
+                held.release();
+            }
+        }
+        if (!result.isSuccess()) {
             return false;
         }
 
-        // Perform the transfer
-        db.updateAccount(from.getAcno(), from.getBalance() - amount);
-        db.updateAccount(to.getAcno(), to.getBalance() + amount);
-        
-        // Record transactions for both accounts
-        db.addTransaction(from.getAcno(), "TRANSFER_OUT", amount, from.getAcno(), to.getAcno(), 
-                         "SUCCESS", "To Account " + to.getAcno());
-        db.addTransaction(to.getAcno(), "TRANSFER_IN", amount, from.getAcno(), to.getAcno(), 
-                         "SUCCESS", "From Account " + from.getAcno());
-        
         // Update account objects
-        from.setBalance(from.getBalance() - amount);
-        to.setBalance(to.getBalance() + amount);
-        
+        from.setBalance(result.getFromBalance());
+        to.setBalance(result.getToBalance());
+
         return true;
     }
 
+    /**
+     * Pay many recipients from one account, e.g. a payroll run
+     * Invalid legs are marked and skipped; the rest are debited as one total and
+     * committed together, so either every valid leg is paid or none is.
+     * @param from Source account
+     * @param legs Recipients and amounts; each leg's status is filled in
+     * @return MultiTransferResult with the per-leg outcome
+     */
+    public MultiTransferResult transferMany(Account from, List<TransferLeg> legs) throws Exception {
+        if (pipeline instanceof LedgerEngine) {
+            // The legs commit as one unit in the database, which would bypass the engine's balances
+            throw new Exception("Multi-leg transfers are not available while the ledger engine is enabled");
+        }
+        long limit = db.getConfigMoney(TRANSFER_LIMIT_KEY, 0);
+        int[] acnos = new int[legs.size() + 1];
+        acnos[0] = from.getAcno();
+        int i = 1;
+        for (TransferLeg leg : legs) {
+            acnos[i++] = leg.getToAcno();
+            if (!leg.isPending()) {
+                continue;
+            }
+            if (leg.getAmount() <= 0) {
+                leg.setStatus(TransferLeg.Status.INVALID_AMOUNT);
+            } else if (leg.getToAcno() == from.getAcno()) {
+                leg.setStatus(TransferLeg.Status.SAME_ACCOUNT);
+            } else if (limit > 0 && leg.getAmount() > limit) {
+                leg.setStatus(TransferLeg.Status.OVER_LIMIT);
+            }
+        }
+
+        MultiTransferResult result;
+        AccountLocks.Held held = accountLocks.lockAll(acnos);
+        try {
+            result = db.transferMany(from.getAcno(), legs);
+        } finally {
+            held.release();
+        }
+        if (result.isSuccess()) {
+            from.setBalance(result.getFromBalance());
+        }
+        return result;
+    }
+
     /**
      * Deposit money to account
      * @param acc Account to deposit into
-     * @param amount Amount to deposit
+     * @param amount Amount to deposit, in paise
      * @return true if deposit successful, false otherwise
      */
-    public boolean deposit(Account acc, double amount) throws Exception {
+    public boolean deposit(Account acc, long amount) throws Exception {
+        return deposit(acc, amount, null);
+    }
+
+    /**
+     * Deposit money at most once per idempotency key
+     * @param idempotencyKey Client-supplied request key, or null for no deduplication
+     */
+    public boolean deposit(Account acc, long amount, String idempotencyKey) throws Exception {
+        return once(idempotencyKey, "DEPOSIT", acc.getAcno(), amount, () -> doDeposit(acc, amount));
+    }
+
+    private boolean doDeposit(Account acc, long amount) throws Exception {
         if (amount <= 0) {
             return false;
         }
+        TransferResult result = apply(LedgerOp.deposit(acc.getAcno(), amount, "Cash Deposit"));
+        if (result.isSuccess()) acc.setBalance(result.getToBalance());
+        return result.isSuccess();
+    }
 
-        db.updateAccount(acc.getAcno(), acc.getBalance() + amount);
-        db.addTransaction(acc.getAcno(), "DEPOSIT", amount, 0, acc.getAcno(), 
-                         "SUCCESS", "Cash Deposit");
-        acc.setBalance(acc.getBalance() + amount);
-        return true;
+    /**
+     * Set up a utility payment from an account, paid by the standing instruction scheduler
+     * @param amount Amount of each payment, in paise
+     * @param firstRun When the first payment falls due
+     * @param frequency How often it repeats, or ONCE
+     */
+    public StandingInstruction scheduleUtility(Account acc, long amount, String utilityName,
+                                               Timestamp firstRun, StandingInstruction.Frequency frequency) throws Exception {
+        if (amount <= 0) {
+            throw new Exception("Payment amount must be positive");
+        }
+        if (utilityName == null || utilityName.isBlank()) {
+            throw new Exception("Utility name is required");
+        }
+        return db.addInstruction(acc.getAcno(), utilityName.trim(), amount, frequency, firstRun);
     }
 
     /**
      * Withdraw money from account
      * @param acc Account to withdraw from
-     * @param amount Amount to withdraw
+     * @param amount Amount to withdraw, in paise
      * @return true if withdrawal successful, false otherwise
      */
-    public boolean withdraw(Account acc, double amount) throws Exception {
-        if (amount <= 0 || acc.getBalance() < amount) {
-            return false;
-        }
+    public boolean withdraw(Account acc, long amount) throws Exception {
+        return withdraw(acc, amount, null);
+    }
 
-        db.updateAccount(acc.getAcno(), acc.getBalance() - amount);
-        db.addTransaction(acc.getAcno(), "WITHDRAWAL", amount, acc.getAcno(), 0, 
-                         "SUCCESS", "Cash Withdrawal");
-        acc.setBalance(acc.getBalance() - amount);
-        return true;
+    /**
+     * Withdraw money at most once per idempotency key
+     * @param idempotencyKey Client-supplied request key, or null for no deduplication
+     */
+    public boolean withdraw(Account acc, long amount, String idempotencyKey) throws Exception {
+        return once(idempotencyKey, "WITHDRAWAL", acc.getAcno(), amount,
+                () -> debit(acc, amount, "WITHDRAWAL", "Cash Withdrawal"));
     }
 
     /**
      * Pay utility bill
      * @param acc Account to pay from
-     * @param amount Bill amount
+     * @param amount Bill amount, in paise
      * @param utilityName Name of utility service
      * @return true if payment successful, false otherwise
      */
-    public boolean payUtility(Account acc, double amount, String utilityName) throws Exception {
-        if (amount <= 0 || acc.getBalance() < amount) {
+    public boolean payUtility(Account acc, long amount, String utilityName) throws Exception {
+        return payUtility(acc, amount, utilityName, null);
+    }
+
+    /**
+     * Pay a utility bill at most once per idempotency key
+     * @param idempotencyKey Client-supplied request key, or null for no deduplication
+     */
+    public boolean payUtility(Account acc, long amount, String utilityName, String idempotencyKey) throws Exception {
+        return once(idempotencyKey, "UTILITY_PAYMENT", acc.getAcno(), amount,
+                () -> debit(acc, amount, "UTILITY_PAYMENT", "Paid " + utilityName));
+    }
+
+    /**
+     * Debit an account, checking the committed balance in the same transaction
+     */
+    private boolean debit(Account acc, long amount, String type, String remarks) throws Exception {
+        if (amount <= 0) {
             return false;
         }
+        TransferResult result = apply(LedgerOp.debit(type, acc.getAcno(), amount, remarks));
+        if (result.isSuccess()) acc.setBalance(result.getFromBalance());
+        return result.isSuccess();
+    }
 
-        db.updateAccount(acc.getAcno(), acc.getBalance() - amount);
-        db.addTransaction(acc.getAcno(), "UTILITY_PAYMENT", amount, acc.getAcno(), 0, 
-                         "SUCCESS", "Paid " + utilityName);
-        acc.setBalance(acc.getBalance() - amount);
-        return true;
+    /**
+     * Apply a single-account operation through the pipeline, or directly as one
+     * transaction that locks the row, checks it, moves the balance and writes the ledger row
+     */
+    private TransferResult apply(LedgerOp op) throws Exception {
+        if (pipeline != null) {
+            return await(pipeline.submit(op));
+        }
+        int acno = op.getFromAcno() != 0 ? op.getFromAcno() : op.getToAcno();
+        TransferResult result;
+        AccountLocks.Held held = accountLocks.lock(acno);
+        try {
+            result = db.applyLedgerBatch(Collections.singletonList(op)).get(0);
+        } finally {
+            held.release();
+        }
+        if (result.getStatus() == TransferResult.Status.ACCOUNT_NOT_FOUND) {
+            throw new Exception("Account not found: " + acno);
+        }
+        return result;
+    }
+
+    /**
+     * Wait for an operation queued on the pipeline, rethrowing its failure as is
+     */
+    private static TransferResult await(CompletableFuture<TransferResult> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    /**
+     * A money movement that reports success or a business failure
+     */
+    private interface Operation {
+        boolean run() throws Exception;
+    }
+
+    /**
+     * Run an operation at most once per idempotency key
+     * The key is claimed in the database before any money moves. A duplicate
+     * gets the stored outcome back without touching accounts_KNBtbl; one that
+     * arrives while the first attempt is still running is rejected. If the
+     * operation fails before commit, the claim is released so the client can retry.
+     * If it may have committed (a lost connection, a timeout or a failed commit),
+     * the key is kept as UNKNOWN and never run again. If the
+     * process dies instead, a retry takes the claim over once it is older than
+     * idempotency.pending_timeout_seconds.
+     */
+    private boolean once(String key, String operation, int acno, long amount, Operation op) throws Exception {
+        if (key == null) {
+            return op.run();
+        }
+        if (key.isEmpty() || key.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new Exception("Idempotency key must be 1-" + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+
+        IdempotencyRecord record = recentRequests.get(key, k -> {
+            IdempotencyRecord existing = db.claimIdempotencyKey(k, operation, acno, amount);
+            if (existing != null) {
+                // Pending records are not cached so a later retry sees the final outcome
+                return existing.getStatus() == IdempotencyRecord.Status.PENDING ? null : existing;
+            }
+            boolean succeeded;
+            try {
+                succeeded = op.run();
+            } catch (Exception e) {
+                if (!OutcomeUnknownException.isUnknown(e)) {
+                    // Rolled back before commit; the client may retry
+                    db.releaseIdempotencyKey(k);
+                    throw e;
+                }
+                // The money may have moved; a retry must not run it again
+                try {
+                    db.markIdempotencyKeyUnknown(k);
+                } catch (Exception markFailed) {
+                    e.addSuppressed(markFailed);
+                }
+                throw e;
+            }
+            db.completeIdempotencyKey(k, succeeded);
+            return new IdempotencyRecord(k, operation, acno, amount,
+                    succeeded ? IdempotencyRecord.Status.SUCCEEDED : IdempotencyRecord.Status.FAILED);
+        });
+
+        if (record == null) {
+            throw new Exception("A request with idempotency key " + key + " is still in progress");
+        }
+        if (!record.matches(operation, acno, amount)) {
+            throw new Exception("Idempotency key " + key + " was already used for a different request");
+        }
+        if (record.getStatus() == IdempotencyRecord.Status.UNKNOWN) {
+            throw new Exception("The outcome of the request with idempotency key " + key
+                    + " is unknown; check the account statement before sending it again");
+        }
+        return record.getStatus() == IdempotencyRecord.Status.SUCCEEDED;
     }
 }
@@ -1,7 +1,7 @@
 package com.knb.view;
 
 import com.knb.model.User;
-import com.knb.service.DatabaseManager;
+import com.knb.repository.BankStorage;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -14,12 +14,12 @@ import java.awt.*;
 public abstract class BaseDashboard extends JFrame {
 
     protected User currentUser;
-    protected DatabaseManager dbManager;
+    protected BankStorage dbManager;
     protected JPanel navigationPanel = new JPanel();
     protected JPanel contentPanel = new JPanel();
     protected CardLayout cardLayout = new CardLayout();
 
-    public BaseDashboard(User user, DatabaseManager db) {
+    public BaseDashboard(User user, BankStorage db) {
         this.currentUser = user;
         this.dbManager = db;
         // Don't call initUI() here - let child classes control when to initialize
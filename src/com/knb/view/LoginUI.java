@@ -3,8 +3,8 @@ package com.knb.view;
 import javax.swing.*;
 import java.awt.*;
 import com.knb.model.User;
+import com.knb.repository.BankStorage;
 import com.knb.service.AuthenticationService;
-import com.knb.service.DatabaseManager;
 import com.knb.service.TransactionManager;
 import com.knb.view.admin.AdminDashboard;
 import com.knb.view.client.ClientDashboard;
@@ -220,7 +220,7 @@ public class LoginUI extends JFrame {
 
         // Successful login
         this.dispose();
-        DatabaseManager db = new DatabaseManager();
+        BankStorage db = authService.getStorage();
 
         switch (user.getRole().toLowerCase()) {
             case "admin":
@@ -230,7 +230,12 @@ public class LoginUI extends JFrame {
                 new ManagerDashboard(user, db).setVisible(true);
                 break;
             case "client":
-                new ClientDashboard(user, db, new TransactionManager(db)).setVisible(true);
+                try {
+                    new ClientDashboard(user, db, TransactionManager.create(db)).setVisible(true);
+                } catch (Exception ex) {
+                    showError("Could not start transaction processing: " + ex.getMessage());
+                    new WelcomeUI(authService).setVisible(true);
+                }
                 break;
             default:
                 showError("Unknown user role. Access denied.");
@@ -3,6 +3,9 @@ package com.knb.view.admin;
 import com.knb.model.AuditEntry;
 import com.knb.model.User;
 import com.knb.model.Account;
+import com.knb.model.Money;
+import com.knb.model.SystemStats;
+import com.knb.repository.BankStorage;
 import com.knb.service.DatabaseManager;
 import com.knb.view.BaseDashboard;
 import com.knb.view.Theme;
@@ -23,7 +26,7 @@ import java.util.Vector;
  */
 public class AdminDashboard extends BaseDashboard {
 
-    public AdminDashboard(User user, DatabaseManager db) {
+    public AdminDashboard(User user, BankStorage db) {
         super(user, db);
         setTitle("KNB Banking - Administrator Dashboard");
         initUI(); // Now call initUI() since we made it protected
@@ -77,14 +80,15 @@ public class AdminDashboard extends BaseDashboard {
         metricsPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 30, 0));
 
         try {
+            SystemStats stats = dbManager.getSystemStats();
             metricsPanel.add(Theme.createMetricCard("Total Users",
-                String.valueOf(dbManager.getUserCount()), Theme.PRIMARY_COLOR));
+                String.valueOf(stats.getUserCount()), Theme.PRIMARY_COLOR));
             metricsPanel.add(Theme.createMetricCard("Active Accounts",
-                String.valueOf(dbManager.getAccountCount()), Theme.SUCCESS_COLOR));
+                String.valueOf(stats.getAccountCount()), Theme.SUCCESS_COLOR));
             metricsPanel.add(Theme.createMetricCard("Total Transactions",
-                String.valueOf(dbManager.getTransactionCount()), Theme.INFO_COLOR));
+                String.valueOf(stats.getTransactionCount()), Theme.INFO_COLOR));
             metricsPanel.add(Theme.createMetricCard("Pending Approvals",
-                String.valueOf(dbManager.getPendingUsers().size()), Theme.WARNING_COLOR));
+                String.valueOf(stats.getPendingUserCount()), Theme.WARNING_COLOR));
         } catch (Exception e) {
             JLabel errorLabel = new JLabel("Error loading metrics: " + e.getMessage());
             errorLabel.setForeground(Theme.DANGER_COLOR);
@@ -249,10 +253,7 @@ public class AdminDashboard extends BaseDashboard {
         reportArea.setRows(20);
 
         try {
-            int userCount = dbManager.getUserCount();
-            int accountCount = dbManager.getAccountCount();
-            int transactionCount = dbManager.getTransactionCount();
-            int pendingCount = dbManager.getPendingUsers().size();
+            SystemStats stats = dbManager.getSystemStats();
 
             reportArea.setText(String.format(
                 "KNB BANKING SYSTEM REPORT\n" +
@@ -279,7 +280,7 @@ public class AdminDashboard extends BaseDashboard {
                 "System Alerts: None\n\n",
                 new java.util.Date(),
                 currentUser.getName(),
-                userCount, accountCount, transactionCount, pendingCount
+                stats.getUserCount(), stats.getAccountCount(), stats.getTransactionCount(), stats.getPendingUserCount()
             ));
         } catch (Exception e) {
             reportArea.setText("Error generating report: " + e.getMessage());
@@ -301,7 +302,7 @@ public class AdminDashboard extends BaseDashboard {
             (userIdStr, balanceStr) -> {
                 try {
                     int userId = Integer.parseInt(userIdStr);
-                    double balance = Double.parseDouble(balanceStr);
+                    long balance = Money.parse(balanceStr);
                     if (balance < 0) {
                         return "Initial balance cannot be negative";
                     }
@@ -317,8 +318,8 @@ public class AdminDashboard extends BaseDashboard {
 
                     dbManager.addAccount(userId, targetUser.getName(), balance, targetUser.getMobile(), "SAVINGS");
                     dbManager.logAudit(currentUser.getUserId(), "ADMIN_ACCOUNT_CREATION",
-                        "Created SAVINGS account for " + targetUser.getName() + " (ID: " + userId + ") with balance ₹" + balance);
-                    return "Account created successfully for " + targetUser.getName() + "\nInitial Balance: ₹" + String.format("%,.2f", balance);
+                        "Created SAVINGS account for " + targetUser.getName() + " (ID: " + userId + ") with balance ₹" + Money.format(balance));
+                    return "Account created successfully for " + targetUser.getName() + "\nInitial Balance: ₹" + Money.format(balance);
                 } catch (NumberFormatException e) {
                     return "Invalid number format";
                 } catch (Exception e) {
@@ -359,8 +360,12 @@ public class AdminDashboard extends BaseDashboard {
                 showWarning("Please enter a SQL query");
                 return;
             }
+            if (!(dbManager instanceof DatabaseManager)) {
+                showWarning("Direct SQL is only available when connected to the database");
+                return;
+            }
 
-            try (Connection conn = dbManager.getConnection();
+            try (Connection conn = ((DatabaseManager) dbManager).getConnection();
                  Statement stmt = conn.createStatement()) {
 
                 boolean hasResultSet = stmt.execute(sql);
@@ -371,6 +376,8 @@ public class AdminDashboard extends BaseDashboard {
                     showSuccess("Query executed successfully");
                 } else {
                     int updateCount = stmt.getUpdateCount();
+                    // Direct DML bypasses cache invalidation, so start from a clean cache
+                    DatabaseManager.clearCaches();
                     resultTable.setModel(new DefaultTableModel());
                     dbManager.logAudit(currentUser.getUserId(), "DIRECT_QUERY_UPDATE", sql);
                     showSuccess("Query executed successfully. " + updateCount + " rows affected.");
@@ -477,7 +484,7 @@ public class AdminDashboard extends BaseDashboard {
                 row.add(a.getAcno());
                 row.add(a.getUserId());
                 row.add(a.getName());
-                row.add(String.format("₹%,.2f", a.getBalance()));
+                row.add("₹" + Money.format(a.getBalance()));
                 row.add(a.getAccountType());
                 row.add(a.getAccountStatus());
                 data.add(row);
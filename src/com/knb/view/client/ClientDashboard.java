@@ -1,9 +1,12 @@
 package com.knb.view.client;
 
 import com.knb.model.Account;
+import com.knb.model.Money;
+import com.knb.model.StatementPage;
 import com.knb.model.Transaction;
 import com.knb.model.User;
-import com.knb.service.DatabaseManager;
+import com.knb.repository.BankStorage;
+import com.knb.service.LedgerArchiver;
 import com.knb.service.TransactionManager;
 import com.knb.view.BaseDashboard;
 import com.knb.view.Theme;
@@ -12,16 +15,19 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
-import java.util.List;
+import java.util.UUID;
 
 public class ClientDashboard extends BaseDashboard {
 
+    private static final int STATEMENT_PAGE_SIZE = 50;
+
     private final TransactionManager txManager;
     private Account currentAccount;
     private JLabel balanceLabel;
 
-    public ClientDashboard(User user, DatabaseManager db, TransactionManager txManager) {
+    public ClientDashboard(User user, BankStorage db, TransactionManager txManager) {
         // Step 1: Call the super constructor. It no longer initializes the UI.
         super(user, db);
         this.txManager = txManager;
@@ -132,7 +138,7 @@ public class ClientDashboard extends BaseDashboard {
         detailsCard.add(createValueLabel(currentAccount.getAccountType()));
         detailsCard.add(createFieldLabel("Current Balance:"));
         
-        balanceLabel = createValueLabel(String.format("₹%,.2f", currentAccount.getBalance()));
+        balanceLabel = createValueLabel("₹" + Money.format(currentAccount.getBalance()));
         balanceLabel.setFont(Theme.HEADER_FONT);
         balanceLabel.setForeground(Theme.SUCCESS_COLOR);
         detailsCard.add(balanceLabel);
@@ -186,11 +192,16 @@ public class ClientDashboard extends BaseDashboard {
         gbc.fill = GridBagConstraints.NONE;
         formCard.add(transferButton, gbc);
         
+        // Resubmitting the same form after an error reuses the idempotency key, so a
+        // transfer that actually went through is not posted twice
+        String[] formNonce = {newNonce()};
+
         // Action Listener
         transferButton.addActionListener(e -> {
             try {
                 int toAcno = Integer.parseInt(toAccountField.getText());
-                double amount = Double.parseDouble(amountField.getText());
+                long amount = Money.parse(amountField.getText());
+                String requestKey = formNonce[0] + ":" + toAcno + ":" + amount;
                 Account toAccount = dbManager.getAccount(toAcno);
 
                 if (toAccount == null) {
@@ -201,7 +212,8 @@ public class ClientDashboard extends BaseDashboard {
                     showError("Insufficient balance.");
                     return;
                 }
-                boolean success = txManager.transferFunds(currentAccount, toAccount, amount);
+                boolean success = txManager.transferFunds(currentAccount, toAccount, amount, requestKey);
+                formNonce[0] = newNonce();
                 if (success) {
                     showSuccess("Transfer successful!");
                     refreshBalance();
@@ -222,11 +234,15 @@ public class ClientDashboard extends BaseDashboard {
         return panel;
     }
 
+    private static String newNonce() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
     private void refreshBalance() {
         try {
             this.currentAccount = dbManager.getAccountByUserId(currentUser.getUserId());
             if (balanceLabel != null) {
-                balanceLabel.setText(String.format("₹%,.2f", currentAccount.getBalance()));
+                balanceLabel.setText("₹" + Money.format(currentAccount.getBalance()));
             }
         } catch (Exception e) {
             showError("Could not refresh balance: " + e.getMessage());
@@ -236,7 +252,7 @@ public class ClientDashboard extends BaseDashboard {
     private JPanel createStatementPanel() {
         JPanel panel = createContentPanel("Transaction Statement");
 
-        String[] columns = {"Transaction ID", "Date/Time", "Type", "Amount (₹)", "Remarks"};
+        String[] columns = {"Transaction ID", "Date/Time", "Type", "Amount (₹)", "Balance (₹)", "Remarks"};
         DefaultTableModel model = new DefaultTableModel(columns, 0) {
             @Override
             public boolean isCellEditable(int row, int column) { return false; }
@@ -244,23 +260,86 @@ public class ClientDashboard extends BaseDashboard {
         JTable table = new JTable(model);
         Theme.styleTable(table);
 
-        try {
-            List<Transaction> transactions = dbManager.getTransactionsForAccount(currentAccount.getAcno());
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            if (transactions.isEmpty()) {
-                model.addRow(new Object[]{"No transactions found for this account.", "", "", "", ""});
-            } else {
-                for (Transaction tx : transactions) {
-                    model.addRow(new Object[]{tx.txId, sdf.format(tx.dateTime), tx.type, String.format("%,.2f", tx.amount), tx.remarks});
+        String[] typeFilters = {"All Types", "DEPOSIT", "WITHDRAWAL", "TRANSFER_IN", "TRANSFER_OUT", "UTILITY_PAYMENT", "INTEREST"};
+        JComboBox<String> typeCombo = new JComboBox<>(typeFilters);
+        Theme.styleComboBox(typeCombo);
+
+        JButton loadMoreButton = new JButton("Load More");
+        Theme.styleSecondaryButton(loadMoreButton);
+
+        // Keyset cursor of the last page shown; null means start from the newest row
+        StatementPage.Cursor[] cursor = {null};
+        // Start of the hot window, and whether paging has moved past it into older history
+        Timestamp[] hotStart = {null};
+        boolean[] older = {false};
+        Runnable reset = () -> {
+            model.setRowCount(0);
+            cursor[0] = null;
+            older[0] = false;
+            hotStart[0] = null;
+            loadMoreButton.setText("Load More");
+        };
+        Runnable loadPage = () -> {
+            String type = typeCombo.getSelectedIndex() == 0 ? null : (String) typeCombo.getSelectedItem();
+            try {
+                int acno = currentAccount.getAcno();
+                if (hotStart[0] == null) {
+                    hotStart[0] = LedgerArchiver.hotWindowStart(
+                            dbManager.getConfigInt(LedgerArchiver.HOT_MONTHS_KEY, LedgerArchiver.DEFAULT_HOT_MONTHS));
+                }
+                // Recent pages are bounded to the hot window so only recent ledger partitions are probed;
+                // past it, paging carries on through the hot and archived ledger together
+                StatementPage page = older[0]
+                        ? dbManager.getFullStatementPage(acno, null, hotStart[0], type, cursor[0], STATEMENT_PAGE_SIZE)
+                        : dbManager.getStatementPage(acno, hotStart[0], null, type, cursor[0], STATEMENT_PAGE_SIZE);
+                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+                if (cursor[0] == null && page.getTransactions().isEmpty()) {
+                    String message = older[0] ? "No older transactions found." : "No recent transactions found.";
+                    model.addRow(new Object[]{message, "", "", "", "", ""});
+                }
+                for (Transaction tx : page.getTransactions()) {
+                    model.addRow(new Object[]{tx.txId, sdf.format(tx.dateTime), tx.type, Money.format(tx.amount),
+                            tx.balanceAfter != null ? Money.format(tx.balanceAfter) : "", tx.remarks});
+                }
+                cursor[0] = page.getNextCursor();
+                if (page.hasMore() || older[0]) {
+                    loadMoreButton.setEnabled(page.hasMore());
+                } else {
+                    // Hot window exhausted; the next page starts at the newest archived row
+                    older[0] = true;
+                    loadMoreButton.setText("Load Older");
+                    loadMoreButton.setEnabled(true);
                 }
+            } catch (Exception e) {
+                model.addRow(new Object[]{"Error loading transaction history.", "", "", "", "", ""});
+                loadMoreButton.setEnabled(false);
+                e.printStackTrace();
             }
-        } catch (Exception e) {
-            model.addRow(new Object[]{"Error loading transaction history.", "", "", "", ""});
-            e.printStackTrace();
-        }
-        
-        JScrollPane scrollPane = new JScrollPane(table);
-        panel.add(scrollPane, BorderLayout.CENTER);
+        };
+
+        typeCombo.addActionListener(e -> {
+            reset.run();
+            loadPage.run();
+        });
+        loadMoreButton.addActionListener(e -> loadPage.run());
+        loadPage.run();
+
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.setOpaque(false);
+        filterPanel.add(new JLabel("Type:"));
+        filterPanel.add(typeCombo);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.setOpaque(false);
+        buttonPanel.add(loadMoreButton);
+
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.setOpaque(false);
+        tablePanel.add(filterPanel, BorderLayout.NORTH);
+        tablePanel.add(new JScrollPane(table), BorderLayout.CENTER);
+        tablePanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        panel.add(tablePanel, BorderLayout.CENTER);
         return panel;
     }
 }
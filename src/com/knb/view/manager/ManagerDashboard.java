@@ -2,7 +2,8 @@ package com.knb.view.manager;
 
 import com.knb.model.User;
 import com.knb.model.Account;
-import com.knb.service.DatabaseManager;
+import com.knb.model.Money;
+import com.knb.repository.BankStorage;
 import com.knb.view.BaseDashboard;
 import com.knb.view.Theme;
 import javax.swing.*;
@@ -19,7 +20,7 @@ public class ManagerDashboard extends BaseDashboard {
 
     private DefaultTableModel clientTableModel;
 
-    public ManagerDashboard(User user, DatabaseManager db) {
+    public ManagerDashboard(User user, BankStorage db) {
         super(user, db);
         setTitle("KNB Banking - Manager Dashboard");
         initUI(); // Now call initUI() since we made it protected
@@ -68,18 +69,24 @@ public class ManagerDashboard extends BaseDashboard {
 
         try {
             List<User> clients = dbManager.getUsersByRole("client");
-            List<Account> accounts = dbManager.getAllAccounts();
-            double totalBalance = accounts.stream().mapToDouble(Account::getBalance).sum();
-            int activeAccounts = (int) accounts.stream().filter(a -> "ACTIVE".equals(a.getAccountStatus())).count();
+            // Aggregate while streaming so large account tables are never held in memory
+            long[] totalBalance = {0};
+            int[] accountCount = {0};
+            int[] activeAccounts = {0};
+            dbManager.forEachAccount(a -> {
+                totalBalance[0] += a.getBalance();
+                accountCount[0]++;
+                if ("ACTIVE".equals(a.getAccountStatus())) activeAccounts[0]++;
+            });
 
             metricsPanel.add(Theme.createMetricCard("Total Clients",
                 String.valueOf(clients.size()), Theme.PRIMARY_COLOR));
             metricsPanel.add(Theme.createMetricCard("Active Accounts",
-                String.valueOf(activeAccounts), Theme.SUCCESS_COLOR));
+                String.valueOf(activeAccounts[0]), Theme.SUCCESS_COLOR));
             metricsPanel.add(Theme.createMetricCard("Total Balance",
-                String.format("₹%,.0f", totalBalance), Theme.INFO_COLOR));
+                String.format("₹%,d", totalBalance[0] / Money.PAISE_PER_RUPEE), Theme.INFO_COLOR));
             metricsPanel.add(Theme.createMetricCard("Accounts w/o Link",
-                String.valueOf(clients.size() - accounts.size()), Theme.WARNING_COLOR));
+                String.valueOf(clients.size() - accountCount[0]), Theme.WARNING_COLOR));
         } catch (Exception e) {
             JLabel errorLabel = new JLabel("Error loading metrics: " + e.getMessage());
             errorLabel.setForeground(Theme.DANGER_COLOR);
@@ -306,8 +313,8 @@ public class ManagerDashboard extends BaseDashboard {
                 Account account = dbManager.getAccountByUserId(client.getUserId());
                 if (account != null) {
                     withAccounts++;
-                    report.append(String.format("✓ %s (%s) - Account: %d, Balance: ₹%,.2f\n",
-                        client.getName(), client.getEmail(), account.getAcno(), account.getBalance()));
+                    report.append(String.format("✓ %s (%s) - Account: %d, Balance: ₹%s\n",
+                        client.getName(), client.getEmail(), account.getAcno(), Money.format(account.getBalance())));
                 } else {
                     withoutAccounts++;
                     report.append(String.format("✗ %s (%s) - No Bank Account\n",
@@ -347,28 +354,33 @@ public class ManagerDashboard extends BaseDashboard {
             report.append("ACCOUNT STATISTICS\n");
             report.append("=================================\n\n");
 
-            List<Account> accounts = dbManager.getAllAccounts();
-            double totalBalance = accounts.stream().mapToDouble(Account::getBalance).sum();
-            long savingsCount = accounts.stream().filter(a -> "SAVINGS".equals(a.getAccountType())).count();
-            long currentCount = accounts.stream().filter(a -> "CURRENT".equals(a.getAccountType())).count();
-
-            report.append(String.format("Total Accounts: %d\n", accounts.size()));
-            report.append(String.format("Total Balance: ₹%,.2f\n", totalBalance));
-            report.append(String.format("Average Balance: ₹%,.2f\n\n",
-                accounts.size() > 0 ? totalBalance / accounts.size() : 0));
+            // Single streaming pass: totals are accumulated while the details are written
+            StringBuilder details = new StringBuilder();
+            long[] totalBalance = {0};
+            long[] counts = new long[3]; // total, savings, current
+            dbManager.forEachAccount(account -> {
+                totalBalance[0] += account.getBalance();
+                counts[0]++;
+                if ("SAVINGS".equals(account.getAccountType())) counts[1]++;
+                if ("CURRENT".equals(account.getAccountType())) counts[2]++;
+                details.append(String.format("Account %d - %s\n", account.getAcno(), account.getName()));
+                details.append(String.format(" Type: %s | Balance: ₹%s | Status: %s\n\n",
+                    account.getAccountType(), Money.format(account.getBalance()), account.getAccountStatus()));
+            });
+
+            report.append(String.format("Total Accounts: %d\n", counts[0]));
+            report.append(String.format("Total Balance: ₹%s\n", Money.format(totalBalance[0])));
+            report.append(String.format("Average Balance: ₹%s\n\n",
+                Money.format(counts[0] > 0 ? totalBalance[0] / counts[0] : 0)));
 
             report.append("ACCOUNT TYPE BREAKDOWN:\n");
             report.append("-----------------------\n");
-            report.append(String.format("Savings Accounts: %d\n", savingsCount));
-            report.append(String.format("Current Accounts: %d\n\n", currentCount));
+            report.append(String.format("Savings Accounts: %d\n", counts[1]));
+            report.append(String.format("Current Accounts: %d\n\n", counts[2]));
 
             report.append("ACCOUNT DETAILS:\n");
             report.append("----------------\n");
-            for (Account account : accounts) {
-                report.append(String.format("Account %d - %s\n", account.getAcno(), account.getName()));
-                report.append(String.format(" Type: %s | Balance: ₹%,.2f | Status: %s\n\n",
-                    account.getAccountType(), account.getBalance(), account.getAccountStatus()));
-            }
+            report.append(details);
 
             reportArea.setText(report.toString());
         } catch (Exception e) {
@@ -451,7 +463,7 @@ public class ManagerDashboard extends BaseDashboard {
                 details.append("===================\n\n");
                 details.append("Account Number: ").append(account.getAcno()).append("\n");
                 details.append("Account Type: ").append(account.getAccountType()).append("\n");
-                details.append("Balance: ₹").append(String.format("%,.2f", account.getBalance())).append("\n");
+                details.append("Balance: ₹").append(Money.format(account.getBalance())).append("\n");
                 details.append("Status: ").append(account.getAccountStatus()).append("\n");
             } else {
                 details.append("ACCOUNT INFORMATION\n");
@@ -507,7 +519,7 @@ public class ManagerDashboard extends BaseDashboard {
             );
 
             if (result == JOptionPane.OK_OPTION) {
-                double balance = Double.parseDouble(balanceField.getText());
+                long balance = Money.parse(balanceField.getText());
                 String type = (String) typeCombo.getSelectedItem();
 
                 if (balance < 0) {
@@ -518,9 +530,9 @@ public class ManagerDashboard extends BaseDashboard {
                 User client = dbManager.getUserById(userId);
                 dbManager.addAccount(userId, client.getName(), balance, client.getMobile(), type);
                 dbManager.logAudit(currentUser.getUserId(), "MANAGER_ACCOUNT_CREATION",
-                    "Manager created " + type + " account for " + name + " (ID: " + userId + ") with balance ₹" + balance);
+                    "Manager created " + type + " account for " + name + " (ID: " + userId + ") with balance ₹" + Money.format(balance));
 
-                showSuccess("Account created successfully for " + name + "\nInitial Balance: ₹" + String.format("%,.2f", balance));
+                showSuccess("Account created successfully for " + name + "\nInitial Balance: ₹" + Money.format(balance));
                 refreshClientTable();
             }
         } catch (NumberFormatException e) {
@@ -540,7 +552,7 @@ public class ManagerDashboard extends BaseDashboard {
         try {
             // Extract user ID from combo selection
             int userId = Integer.parseInt(selectedClient.split(" - ")[0]);
-            double balance = Double.parseDouble(balanceField.getText());
+            long balance = Money.parse(balanceField.getText());
             String type = (String) typeCombo.getSelectedItem();
 
             if (balance < 0) {
@@ -551,9 +563,9 @@ public class ManagerDashboard extends BaseDashboard {
             User client = dbManager.getUserById(userId);
             dbManager.addAccount(userId, client.getName(), balance, client.getMobile(), type);
             dbManager.logAudit(currentUser.getUserId(), "MANAGER_ACCOUNT_CREATION",
-                "Manager created " + type + " account for " + client.getName() + " (ID: " + userId + ") with balance ₹" + balance);
+                "Manager created " + type + " account for " + client.getName() + " (ID: " + userId + ") with balance ₹" + Money.format(balance));
 
-            showSuccess("Account created successfully for " + client.getName() + "\nInitial Balance: ₹" + String.format("%,.2f", balance));
+            showSuccess("Account created successfully for " + client.getName() + "\nInitial Balance: ₹" + Money.format(balance));
 
             // Reset form
             balanceField.setText("1000.00");
@@ -574,7 +586,7 @@ public class ManagerDashboard extends BaseDashboard {
                 row.add(a.getAcno());
                 row.add(a.getUserId());
                 row.add(a.getName());
-                row.add(String.format("₹%,.2f", a.getBalance()));
+                row.add("₹" + Money.format(a.getBalance()));
                 row.add(a.getAccountType());
                 row.add(a.getAccountStatus());
                 data.add(row);